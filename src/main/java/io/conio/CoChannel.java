@@ -19,6 +19,7 @@ package io.conio;
 import java.io.IOException;
 import java.io.Closeable;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.concurrent.Callable;
 
 import com.offbynull.coroutines.user.Continuation;
@@ -47,6 +48,145 @@ public interface CoChannel extends Closeable {
     int read(Continuation co, ByteBuffer dst) throws IOException;
     int write(Continuation co, ByteBuffer src) throws IOException;
 
+    /**
+     * <p>
+     *  Read bytes into dst, waiting at most timeoutMillis for the channel readable.
+     * </p>
+     * @param co the continuation
+     * @param dst the destination buffer
+     * @param timeoutMillis the timeout millis, no timeout if it's not positive
+     * @return the bytes read, or -1 if end of stream
+     * @throws java.net.SocketTimeoutException if the timeout expired
+     * @throws IOException if an I/O error occurs
+     */
+    int read(Continuation co, ByteBuffer dst, long timeoutMillis) throws IOException;
+
+    /**
+     * <p>
+     *  Write all bytes of src, failing if it's not completed in timeoutMillis.
+     * </p>
+     * @param co the continuation
+     * @param src the source buffer
+     * @param timeoutMillis the timeout millis, no timeout if it's not positive
+     * @return the bytes written
+     * @throws java.net.SocketTimeoutException if the timeout expired
+     * @throws IOException if an I/O error occurs
+     */
+    int write(Continuation co, ByteBuffer src, long timeoutMillis) throws IOException;
+
+    /**
+     * <p>
+     *  Scattering read: read bytes into the sequence of buffers in one operation.
+     * </p>
+     * @param co the continuation
+     * @param dsts the destination buffers
+     * @return the bytes read, or -1 if end of stream
+     * @throws IOException if an I/O error occurs
+     */
+    long read(Continuation co, ByteBuffer[] dsts) throws IOException;
+
+    /**
+     * <p>
+     *  Scattering read, waiting at most timeoutMillis for the channel readable.
+     * </p>
+     * @param co the continuation
+     * @param dsts the destination buffers
+     * @param timeoutMillis the timeout millis, no timeout if it's not positive
+     * @return the bytes read, or -1 if end of stream
+     * @throws java.net.SocketTimeoutException if the timeout expired
+     * @throws IOException if an I/O error occurs
+     */
+    long read(Continuation co, ByteBuffer[] dsts, long timeoutMillis) throws IOException;
+
+    /**
+     * <p>
+     *  Gathering write: write all bytes of the sequence of buffers, e.g. a header and a body,
+     *  in as few operations as possible.
+     * </p>
+     * @param co the continuation
+     * @param srcs the source buffers
+     * @return the bytes written
+     * @throws IOException if an I/O error occurs
+     */
+    long write(Continuation co, ByteBuffer[] srcs) throws IOException;
+
+    /**
+     * <p>
+     *  Gathering write, failing if it's not completed in timeoutMillis.
+     * </p>
+     * @param co the continuation
+     * @param srcs the source buffers
+     * @param timeoutMillis the timeout millis, no timeout if it's not positive
+     * @return the bytes written
+     * @throws java.net.SocketTimeoutException if the timeout expired
+     * @throws IOException if an I/O error occurs
+     */
+    long write(Continuation co, ByteBuffer[] srcs, long timeoutMillis) throws IOException;
+
+    /**
+     * <p>
+     *  Queue the buffer in the outbound buffers without writing. The outbound buffers are written
+     *  in gathering writes by {@link #flush(Continuation)}, a later write, or the event loop before
+     *  it waits for events. The buffer is kept until written, so don't modify it. It must be called
+     *  in the event loop of this channel, e.g. by coroutines of the same loop.
+     * </p>
+     * @param src the source buffer
+     */
+    void writeLater(ByteBuffer src);
+
+    /**
+     * <p>
+     *  Write all outbound buffers queued by {@link #writeLater(ByteBuffer)}.
+     * </p>
+     * @param co the continuation
+     * @return the bytes written
+     * @throws IOException if an I/O error occurs
+     */
+    long flush(Continuation co) throws IOException;
+
+    /**
+     * <p>
+     *  Transfer bytes of the file to this channel without copying them in user space when possible:
+     *  FileChannel.transferTo() in nio mode, and memory-mapped chunks in aio mode.
+     * </p>
+     * @param co the continuation
+     * @param src the source file
+     * @param position the file position
+     * @param count max bytes to transfer
+     * @return the bytes transferred, less than count if end of file
+     * @throws IOException if an I/O error occurs
+     */
+    long transferFrom(Continuation co, FileChannel src, long position, long count) throws IOException;
+
+    /**
+     * <p>
+     *  Transfer bytes of the file to this channel, failing if it's not completed in timeoutMillis.
+     * </p>
+     * @param co the continuation
+     * @param src the source file
+     * @param position the file position
+     * @param count max bytes to transfer
+     * @param timeoutMillis the timeout millis, no timeout if it's not positive
+     * @return the bytes transferred, less than count if end of file
+     * @throws java.net.SocketTimeoutException if the timeout expired
+     * @throws IOException if an I/O error occurs
+     */
+    long transferFrom(Continuation co, FileChannel src, long position, long count, long timeoutMillis)
+            throws IOException;
+
+    /**
+     * <p>
+     *  Read into the inBuffer. If the CoGroup releases idle buffers, the cleared inBuffer and outBuffer
+     *  allocated by this channel are released while waiting for the channel readable, and allocated again
+     *  on readiness, so fetch them again after this call. In aio mode the buffers are kept, since a
+     *  pending read needs its buffer.
+     * </p>
+     * @param co the continuation
+     * @return the bytes read, or -1 if end of stream
+     * @throws IOException if an I/O error occurs
+     */
+    int readInBuffer(Continuation co) throws IOException;
+
     ByteBuffer inBuffer();
     CoChannel inBuffer(ByteBuffer buffer);
 
@@ -54,7 +194,21 @@ public interface CoChannel extends Closeable {
     CoChannel outBuffer(ByteBuffer buffer);
 
     default ByteBuffer allocate(int size){
-        return ByteBuffer.allocate(size);
+        return group().getBufferAllocator().allocate(size);
+    }
+
+    default void release(ByteBuffer buffer){
+        group().getBufferAllocator().release(buffer);
+    }
+
+    /**
+     * <p>
+     *  Stop watching the channel readable until the next read, e.g. for the sticky read
+     *  of the nio CoGroup.
+     * </p>
+     */
+    default void pauseRead(){
+
     }
 
     boolean isOpen();
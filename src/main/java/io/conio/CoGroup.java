@@ -18,14 +18,22 @@ package io.conio;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.*;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 import com.offbynull.coroutines.user.Continuation;
 import com.offbynull.coroutines.user.Coroutine;
@@ -50,20 +58,43 @@ public class CoGroup {
     private String host;
     private int port = 9696;
     private int backlog = 1000;
+    private boolean reusePort;
+    private int acceptBatchSize = 64;
+    private int coQueueCapacity = 1 << 16;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+    // Percentage of loop time for I/O, and the rest for tasks
+    private int ioRatio = 50;
+    private int maxTasksPerLoop = Integer.MAX_VALUE;
+    // Idle time(ms) of push channels, 0 means no idle checking
+    private long readerIdleTime, writerIdleTime, allIdleTime;
+    private long idleCheckInterval;
+    // Keep OP_READ armed between reads in nio mode
+    private boolean stickyRead;
     private int bufferSize = 4096;
+    private BufferAllocator bufferAllocator = HeapBufferAllocator.INSTANCE;
+    // Release the cleared channel buffers in readInBuffer() until readable
+    private boolean releaseIdleBuffers;
 
     private volatile boolean stopped;
     private volatile boolean shutdown;
-    private IoGroup ioGroup;
+    // Event loops: each one has its own thread, selector and coQueue
+    private int ioThreads = 1;
+    // Completion threads of the channel group in each aio event loop
+    private int aioThreads = 1;
+    private IoGroup[] ioGroups;
+    private final AtomicInteger ioGroupIndex = new AtomicInteger();
+    private final AtomicInteger runningIoGroups = new AtomicInteger();
 
     private ChannelInitializer initializer = ChannelInitializer.NOOP;
     private int workerThreads = RtUtils.PROCESSORS;
     private ExecutorService workerThreadPool;
-    // Timer uses an independent executor service for unaffected timer task
-    // @since 2018-08-21 little-pan
-    private ScheduledExecutorService timerService;
+    // Each event loop advances its own timing wheel in this tick(ms)
+    private long timerTick = 10L;
 
-    private PullChannelPool pullChannelPool;
+    // Each event loop owns a pull channel pool built from this builder
+    private PullChannelPool.Builder pullChannelPoolBuilder;
+    // Max pipelined requests in flight on a pull channel
+    private int maxPipelinedRequests = 128;
 
     protected CoGroup(){
 
@@ -71,18 +102,71 @@ public class CoGroup {
 
     public void start(){
         final String name = getName();
-        final IoGroup group;
-        if(isUseAio()){
-            group = bootAio(name + "-aio");
-        }else{
-            group = bootNio(name + "-nio");
-        }
-        group.start();
-        ioGroup = group;
+        final int n = getIoThreads();
+        final IoGroup[] groups = new IoGroup[n];
+        boolean failed = true;
+        try{
+            for(int i = 0; i < n; ++i){
+                final String suffix = (n == 1? "": "-" + i);
+                if(isUseAio()){
+                    groups[i] = bootAio(name + "-aio" + suffix, i);
+                }else{
+                    groups[i] = bootNio(name + "-nio" + suffix, i);
+                }
+            }
+            failed = false;
+        }finally {
+            if(failed){
+                for(final IoGroup group: groups){
+                    if(group != null){
+                        group.close();
+                    }
+                }
+            }
+        }
+        ioGroups = groups;
+        runningIoGroups.set(n);
+        for(final IoGroup group: groups){
+            group.start();
+        }
     }
 
     public final boolean inGroup(){
-        return ioGroup.inGroup();
+        return (currentIoGroup() != null);
+    }
+
+    /**
+     * <p>
+     *  Find the event loop that the current thread runs.
+     * </p>
+     * @return the current event loop, or null if the current thread not in this group
+     */
+    final IoGroup currentIoGroup(){
+        final IoGroup[] groups = ioGroups;
+        if(groups == null){
+            return null;
+        }
+        for(final IoGroup group: groups){
+            if(group.inGroup()){
+                return group;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * <p>
+     *  Choose the next event loop in round-robin for a new channel or coroutine.
+     * </p>
+     * @return the next event loop
+     */
+    final IoGroup nextIoGroup(){
+        final IoGroup[] groups = ioGroups;
+        if(groups.length == 1){
+            return groups[0];
+        }
+        final int i = ioGroupIndex.getAndIncrement() & Integer.MAX_VALUE;
+        return groups[i % groups.length];
     }
 
     public final boolean isStopped(){
@@ -93,10 +177,12 @@ public class CoGroup {
         if(isShutdown()){
             return;
         }
-        final IoGroup group = ioGroup;
+        final IoGroup[] groups = ioGroups;
         shutdown = true;
-        if(group != null){
-            group.shutdown();
+        if(groups != null){
+            for(final IoGroup group: groups){
+                group.shutdown();
+            }
         }
     }
 
@@ -108,11 +194,13 @@ public class CoGroup {
         if(isStopped()){
             return;
         }
-        final IoGroup group = ioGroup;
-        if(group == null){
+        final IoGroup[] groups = ioGroups;
+        if(groups == null){
             return;
         }
-        group.await();
+        for(final IoGroup group: groups){
+            group.await();
+        }
     }
 
     public ChannelInitializer channelInitializer(){
@@ -132,14 +220,13 @@ public class CoGroup {
     }
 
     public void connect(InetSocketAddress remote, CoHandler handler) {
-        final IoGroup group = ioGroup;
         if(isStopped()){
             throw new IllegalStateException(name+" has stopped");
         }
         if(isShutdown()){
             throw new IllegalStateException(name+" has shutdown");
         }
-        group.connect(new ConnectRequest(remote, handler));
+        nextIoGroup().connect(new ConnectRequest(remote, handler));
     }
 
     final CoFutureImpl<PullCoChannel> connect(CoRunner source, String host, int port) {
@@ -147,29 +234,26 @@ public class CoGroup {
     }
 
     final CoFutureImpl<PullCoChannel> connect(CoRunner source, InetSocketAddress remote) {
-        final IoGroup group = ioGroup;
+        final IoGroup group = currentIoGroup();
         if(isStopped()){
             throw new IllegalStateException(name+" has stopped");
         }
         if(isShutdown()){
             throw new IllegalStateException(name+" has shutdown");
         }
-        if(!inGroup()){
+        if(group == null){
             throw new IllegalStateException("The current coroutine not in this CoGroup " + name);
         }
+        // The pull channel must run in the event loop of the source coroutine
         return group.connect(source, new ConnectRequest(remote, null));
     }
 
     final PullChannelPool getPullChannelPool(){
-        return pullChannelPool;
-    }
-
-    private void closePullChannelPool(){
-        final PullChannelPool pool = getPullChannelPool();
-        if(pool != null){
-            pool.close();
-            pullChannelPool = null;
+        final IoGroup group = currentIoGroup();
+        if(group == null){
+            return null;
         }
+        return group.pullChannelPool;
     }
 
     /**
@@ -181,14 +265,14 @@ public class CoGroup {
      * @return a PullCoRunner
      */
     public PullCoRunner startCoroutine(){
-        final IoGroup group = ioGroup;
+        final IoGroup group = currentIoGroup();
         if(isStopped()){
             throw new IllegalStateException(name+" has stopped");
         }
         if(isShutdown()){
             throw new IllegalStateException(name+" has shutdown");
         }
-        if(!inGroup()){
+        if(group == null){
             throw new IllegalStateException("The current coroutine not in this CoGroup " + name);
         }
         return group.startCoroutine();
@@ -202,17 +286,20 @@ public class CoGroup {
      * @since 2018-08-18
      */
     public void startCoroutine(CoHandler handler){
-        final IoGroup group = ioGroup;
         if(isStopped()){
             throw new IllegalStateException(name+" has stopped");
         }
         if(isShutdown()){
             throw new IllegalStateException(name+" has shutdown");
         }
+        IoGroup group = currentIoGroup();
+        if(group == null){
+            group = nextIoGroup();
+        }
         group.startCoroutine(handler);
     }
 
-    protected IoGroup bootNio(String name){
+    protected IoGroup bootNio(String name, int index){
         boolean failed;
 
         final Selector selector;
@@ -235,9 +322,14 @@ public class CoGroup {
         failed = true;
         try{
             final String host = getHost();
-            if(host != null){
+            // Only the first event loop accepts, then dispatches channels to all loops,
+            // except that each loop binds its own listener in reuse port mode
+            if(host != null && (index == 0 || isReusePort())){
                 chan = ServerSocketChannel.open();
                 chan.configureBlocking(false);
+                if(isReusePort()){
+                    IoUtils.setReusePort(chan);
+                }
                 chan.bind(new InetSocketAddress(host, getPort()), getBacklog());
                 chan.register(selector, SelectionKey.OP_ACCEPT);
             }
@@ -248,31 +340,32 @@ public class CoGroup {
         }finally{
             if(failed){
                 IoUtils.close(chan);
+                IoUtils.close(selector);
             }
         }
 
-        return new NioGroup(this, name, serverChan, selector);
+        return new NioGroup(this, name, index, serverChan, selector);
     }
 
-    protected IoGroup bootAio(final String name){
+    protected IoGroup bootAio(final String name, int index){
         boolean failed;
 
-        final ExecutorService ioExec = Executors.newFixedThreadPool(1, (r) -> {
-            final Thread t = new Thread(r, name+"-exec");
-            t.setDaemon(isDaemon());
-            return t;
-        });
+        // Each event loop has its own channel group, so completions of its channels
+        // only go to its own coQueue. The completion handlers can't run in the loop itself:
+        // the JDK polls the kernel events in the threads of the channel group, and has no
+        // public way to run the loop tasks and timers on them, so a completion takes one
+        // hop from its completion thread into the loop.
+        final AtomicInteger counter = new AtomicInteger();
         final AsynchronousChannelGroup chanGroup;
-        failed = true;
         try{
-            chanGroup = AsynchronousChannelGroup.withThreadPool(ioExec);
-            failed = false;
+            chanGroup = AsynchronousChannelGroup.withFixedThreadPool(getAioThreads(), (r) -> {
+                final int i = counter.getAndIncrement();
+                final Thread t = new Thread(r, name+"-exec" + (i == 0? "": "-" + i));
+                t.setDaemon(isDaemon());
+                return t;
+            });
         }catch(IOException e){
             throw new RuntimeException(e);
-        }finally {
-            if(failed){
-                ioExec.shutdown();
-            }
         }
 
         final AsynchronousServerSocketChannel serverChan;
@@ -280,8 +373,13 @@ public class CoGroup {
         failed = true;
         try{
             final String host = getHost();
-            if(host != null) {
+            // Only the first event loop accepts, then dispatches channels to all loops,
+            // except that each loop binds its own listener in reuse port mode
+            if(host != null && (index == 0 || isReusePort())) {
                 chan = AsynchronousServerSocketChannel.open(chanGroup);
+                if(isReusePort()){
+                    IoUtils.setReusePort(chan);
+                }
                 chan.bind(new InetSocketAddress(host, getPort()), getBacklog());
             }
             serverChan = chan;
@@ -292,54 +390,198 @@ public class CoGroup {
             if(failed){
                 IoUtils.close(chan);
                 chanGroup.shutdown();
-                ioExec.shutdown();
             }
         }
 
-        return new AioGroup(this, name, serverChan, ioExec, chanGroup);
+        return new AioGroup(this, name, index, serverChan, chanGroup);
     }
 
     static abstract class IoGroup implements Runnable {
         final static Logger log = LoggerFactory.getLogger(IoGroup.class);
 
-        protected final BlockingQueue<CoTask> coQueue;
+        // The inbox of tasks offered by other threads
+        protected final MpscRingQueue<CoTask> coQueue;
+        // Tasks offered by this event loop itself: no CAS, no wakeup
+        protected final Queue<CoTask> localQueue;
+        private final LongAdder rejectedTasks = new LongAdder();
 
         protected final String name;
         protected final CoGroup coGroup;
+        protected final int index;
+        protected PullChannelPool pullChannelPool;
+
+        // Timers of this event loop, and the select or poll timeout derives from the next deadline
+        final static int TIMING_WHEEL_SIZE = 512;
+        // Max buffers in one gathering write of the outbound buffers
+        final static int GATHER_SIZE = 64;
+        protected final HashedTimingWheel timingWheel;
+        // The loop time for access times of channels, updated after select or poll
+        protected long currentTime = HashedTimingWheel.currentTime();
+
+        // Push channels tracked for idle checking
+        private IdleTracker idleHead;
+        private HashedTimingWheel.Timeout idleTimeout;
+        private HashedTimingWheel.Timeout evictTimeout;
+        private final List<IdleTracker> idleFired = new ArrayList<>();
+
+        // Channels with outbound buffers of writeLater(), flushed before the loop waits for events
+        private final ArrayDeque<IoChannel> flushQueue = new ArrayDeque<>();
 
         protected Thread runner;
+        // This event loop stopped, so its coQueue takes no more tasks
+        private volatile boolean stopped;
+        // Ids are unique in the CoGroup: each event loop steps by the loop count
+        private final int idStep;
         private int nextChanId;
         private int nextCoroId;
 
-        protected IoGroup(CoGroup coGroup, String name){
+        protected IoGroup(CoGroup coGroup, String name, int index){
             this.coGroup = coGroup;
             this.name = name;
-            this.coQueue = new LinkedTransferQueue<>();
+            this.index = index;
+            this.idStep = coGroup.getIoThreads();
+            this.nextChanId = index;
+            this.nextCoroId = index;
+            this.coQueue = new MpscRingQueue<>(coGroup.getCoQueueCapacity());
+            this.localQueue = new ArrayDeque<>();
+            this.timingWheel = new HashedTimingWheel(coGroup.getTimerTick(), TIMING_WHEEL_SIZE);
+            final PullChannelPool.Builder poolBuilder = coGroup.pullChannelPoolBuilder;
+            if(poolBuilder != null){
+                this.pullChannelPool = poolBuilder.build();
+            }
         }
 
         protected void initialize(){
-            final PullChannelPool pool = coGroup.getPullChannelPool();
+            final PullChannelPool pool = pullChannelPool;
             if(pool != null && pool.getHeartbeatCodec() != null){
                 log.info("{}: Start {} heartbeat task", name, pool.getName());
                 final long period = pool.getHeartbeatInterval() * 1000L;
-                final ScheduledCoFuture<?> f = coGroup.schedule(pool, period, period);
+                final ScheduledCoFuture<?> f = schedule(pool, period, period);
                 pool.setHeartbeatFuture(f);
             }
+            final long interval = coGroup.idleCheckInterval();
+            if(interval > 0L){
+                idleTimeout = timingWheel.schedule(this::checkIdle, interval);
+            }
+            if(pool != null && pool.getMaxIdleTime() > 0L){
+                evictTimeout = timingWheel.schedule(this::evictIdleChannels, evictInterval(pool));
+            }
+        }
+
+        // Sweep the idle pooled channels in a quarter of maxIdleTime
+        private long evictInterval(final PullChannelPool pool){
+            return Math.max(pool.getMaxIdleTime() >> 2, coGroup.getTimerTick());
+        }
+
+        private void evictIdleChannels(){
+            final PullChannelPool pool = pullChannelPool;
+            if(pool == null || !pool.isOpen()){
+                evictTimeout = null;
+                return;
+            }
+            pool.evictIdle();
+            evictTimeout = timingWheel.reschedule(evictTimeout, evictInterval(pool));
+        }
+
+        final void flushLater(final IoChannel ioChan){
+            flushQueue.offer(ioChan);
+        }
+
+        protected final void flushChannels(){
+            // Channels queued in flushing wait for the next round
+            for(int n = flushQueue.size(); n > 0; --n){
+                flushQueue.poll().flushNow();
+            }
+        }
+
+        final IdleTracker trackIdle(final IoChannel ioChan){
+            if(coGroup.idleCheckInterval() == 0L || !(ioChan.coChannel() instanceof PushCoChannel)){
+                return null;
+            }
+            final IdleTracker tracker = new IdleTracker(ioChan, currentTime);
+            final IdleTracker head = idleHead;
+            tracker.next = head;
+            if(head != null){
+                head.prev = tracker;
+            }
+            idleHead = tracker;
+            return tracker;
+        }
+
+        final void untrackIdle(final IdleTracker tracker){
+            if(tracker == null || tracker.removed){
+                return;
+            }
+            final IdleTracker prev = tracker.prev, next = tracker.next;
+            if(prev == null){
+                idleHead = next;
+            }else{
+                prev.next = next;
+            }
+            if(next != null){
+                next.prev = prev;
+            }
+            tracker.prev = tracker.next = null;
+            tracker.removed = true;
+        }
+
+        /**
+         * <p>
+         *  The sweep of idle push channels. The idle handlers are called after the sweep,
+         *  since they may close or open channels.
+         * </p>
+         */
+        private void checkIdle(){
+            final long now = HashedTimingWheel.currentTime();
+            final List<IdleTracker> fired = idleFired;
+            for(IdleTracker tracker = idleHead; tracker != null;){
+                final IdleTracker next = tracker.next;
+                if(!tracker.ioChan.isOpen()){
+                    untrackIdle(tracker);
+                }else if((tracker.state = tracker.check(coGroup, now)) != null){
+                    fired.add(tracker);
+                }
+                tracker = next;
+            }
+            try{
+                for(final IdleTracker tracker: fired){
+                    final IoChannel ioChan = tracker.ioChan;
+                    if(!ioChan.isOpen()){
+                        continue;
+                    }
+                    final PushCoChannel coChan = (PushCoChannel)ioChan.coChannel();
+                    final CoHandler handler = coChan.handler();
+                    try{
+                        if(handler == null){
+                            IoUtils.close(coChan);
+                        }else{
+                            handler.idle(coChan, tracker.state);
+                        }
+                    }catch(final Throwable cause){
+                        log.warn(name + ": idle handler error", cause);
+                    }
+                }
+            }finally {
+                fired.clear();
+            }
+            timingWheel.reschedule(idleTimeout, coGroup.idleCheckInterval());
         }
 
         @Override
         public abstract void run();
 
         public PullCoRunner startCoroutine(){
-            final PullCoRunner co = new PullCoRunner(nextCoroId++, coGroup);
+            final PullCoRunner co = new PullCoRunner(nextCoroId(), coGroup);
             co.resume();
             return co;
         }
 
         public void startCoroutine(CoHandler handler){
-            final PushCoRunner co = new PushCoRunner(nextCoroId++, coGroup);
+            final PushCoRunner co = new PushCoRunner(nextCoroId(), coGroup);
             co.handler(handler);
-            offer(() -> { co.resume();});
+            if(!offer(() -> { co.resume();})){
+                throw new RejectedExecutionException(name + ": coQueue full");
+            }
         }
 
         public abstract CoFutureImpl<PullCoChannel> connect(CoRunner source, ConnectRequest request);
@@ -347,7 +589,7 @@ public class CoGroup {
         public abstract void connect(ConnectRequest request);
 
         public void start(){
-            final Thread t = new Thread(this, name);
+            final Thread t = new LoopThread(this, name);
             t.setDaemon(coGroup.isDaemon());
             t.start();
             runner = t;
@@ -372,62 +614,200 @@ public class CoGroup {
         }
 
         ScheduledCoFuture<?> schedule(CoHandler handler, final long delay){
-            final CoGroup group = coGroup;
-            final ScheduledCoFutureImpl<?> coFuture = new ScheduledCoFutureImpl<>(group, handler);
-            final ScheduledExecutorService executors = group.timerService;
-            final ScheduledFuture<?> schedFuture = executors.schedule(() -> {
-                if(group.isShutdown()){
-                    return;
-                }
-                offer(coFuture);
-            }, delay, TimeUnit.MILLISECONDS);
-            coFuture.setScheduledFuture(schedFuture);
+            final ScheduledCoFutureImpl<?> coFuture = new ScheduledCoFutureImpl<>(this, handler, 0L);
+            coFuture.start(HashedTimingWheel.currentTime() + delay);
             return coFuture;
         }
 
         ScheduledCoFuture<?> schedule(CoHandler handler, long initialDelay, long period){
-            final CoGroup group = coGroup;
-            final ScheduledCoFutureImpl<?> coFuture = new ScheduledCoFutureImpl<>(group, handler);
-            final ScheduledExecutorService executors = group.timerService;
-            final ScheduledFuture<?> schedFuture = executors.scheduleAtFixedRate(() -> {
-                if(group.isShutdown()){
-                    return;
-                }
-                offer(coFuture);
-            }, initialDelay, period, TimeUnit.MILLISECONDS);
-            coFuture.setScheduledFuture(schedFuture);
+            if(period < 1L){
+                throw new IllegalArgumentException("period " + period);
+            }
+            final ScheduledCoFutureImpl<?> coFuture = new ScheduledCoFutureImpl<>(this, handler, period);
+            coFuture.start(HashedTimingWheel.currentTime() + initialDelay);
             return coFuture;
         }
 
+        /**
+         * <p>
+         *  The select or poll timeout: the delay to the next timer tick, at most 1000ms.
+         * </p>
+         * @return the timeout millis
+         */
+        protected final long pollTimeout(){
+            final long delay = timingWheel.nextDelay();
+            if(delay < 0L || delay > 1000L){
+                return 1000L;
+            }
+            return delay;
+        }
+
         public final boolean inGroup(){
             return (Thread.currentThread() == runner);
         }
 
         public int nextId(){
-            return nextChanId++;
+            final int id = nextChanId;
+            nextChanId += idStep;
+            return id;
+        }
+
+        private int nextCoroId(){
+            final int id = nextCoroId;
+            nextCoroId += idStep;
+            return id;
+        }
+
+        /**
+         * <p>
+         *  Offer a task into this event loop. When the coQueue is full, the task is rejected
+         *  in REJECT overflow policy or if the producer is another event loop, otherwise the
+         *  producer waits for a free slot.
+         * </p>
+         * @param coTask the task
+         * @return true if offered, false if rejected or this loop stopped
+         */
+        protected boolean offer(CoTask coTask){
+            if(inGroup()){
+                return localQueue.offer(coTask);
+            }
+            if(coQueue.offer(coTask)){
+                wakeup();
+                return true;
+            }
+            if(coGroup.getOverflowPolicy() == OverflowPolicy.REJECT){
+                rejectedTasks.increment();
+                return false;
+            }
+            return put(coTask);
+        }
+
+        /**
+         * <p>
+         *  Offer a task that must not be lost, such as the completion of admitted work,
+         *  waiting for a free slot in any overflow policy. An event loop never waits, or a full
+         *  loop stalls all channels of another one, and two loops handing off to each other
+         *  deadlock, so the task is rejected when the producer is another event loop.
+         * </p>
+         * @param coTask the task
+         * @return true if offered, false if rejected or this loop stopped
+         */
+        protected boolean put(CoTask coTask){
+            if(inGroup()){
+                return localQueue.offer(coTask);
+            }
+            for(int spins = 0;; ++spins){
+                if(stopped){
+                    return false;
+                }
+                if(coQueue.offer(coTask)){
+                    break;
+                }
+                if(Thread.currentThread() instanceof LoopThread){
+                    rejectedTasks.increment();
+                    return false;
+                }
+                if(spins < 100){
+                    Thread.yield();
+                }else{
+                    LockSupport.parkNanos(100000L);
+                }
+            }
+            wakeup();
+            return true;
         }
 
-        protected boolean offer(CoTask coTask){
-           return coQueue.offer(coTask);
+        /**
+         * <p>
+         *  Wake up this event loop after a task offered into the coQueue.
+         * </p>
+         */
+        protected void wakeup(){
+
+        }
+
+        protected final boolean hasCoTasks(){
+            return (!localQueue.isEmpty() || !coQueue.isEmpty());
+        }
+
+        protected final CoTask pollCoTask(){
+            final CoTask coTask = localQueue.poll();
+            if(coTask != null){
+                return coTask;
+            }
+            return coQueue.poll();
+        }
+
+        final long rejectedTasks(){
+            return rejectedTasks.sum();
+        }
+
+        protected void closePullChannelPool(){
+            final PullChannelPool pool = pullChannelPool;
+            if(pool != null){
+                pool.close();
+                pullChannelPool = null;
+            }
+        }
+
+        /**
+         * <p>
+         *  Release the resources of this event loop such as selector, server channel.
+         * </p>
+         */
+        protected void close(){
+
         }
 
         protected void cleanup(){
-            coGroup.stopped = true;
+            stopped = true;
+            localQueue.clear();
             coQueue.clear();
-            coGroup.timerService.shutdown();
-            coGroup.closePullChannelPool();
-            coGroup.workerThreadPool.shutdown();
-            coGroup.ioGroup = null;
+            closePullChannelPool();
+            close();
             log.info("{}: Stopped",  name);
+            // The last stopped event loop stops the CoGroup
+            if(coGroup.runningIoGroups.decrementAndGet() == 0){
+                coGroup.stopped = true;
+                coGroup.workerThreadPool.shutdown();
+                log.info("{}: Stopped",  coGroup.name);
+            }
         }
 
     }// IoGroup
 
+    /**
+     * <p>
+     *  The thread of an event loop, which never waits for a free slot in the coQueue of another loop.
+     * </p>
+     */
+    static class LoopThread extends Thread {
+
+        LoopThread(Runnable target, String name){
+            super(target, name);
+        }
+
+    }// LoopThread
+
     interface IoChannel {
         CoChannel coChannel();
 
-        int read(Continuation co, ByteBuffer dst) throws IOException;
-        int write(Continuation co, ByteBuffer src) throws IOException;
+        int read(Continuation co, ByteBuffer dst, long timeoutMillis) throws IOException;
+        int write(Continuation co, ByteBuffer src, long timeoutMillis) throws IOException;
+
+        long read(Continuation co, ByteBuffer[] dsts, long timeoutMillis) throws IOException;
+        long write(Continuation co, ByteBuffer[] srcs, long timeoutMillis) throws IOException;
+
+        void writeLater(ByteBuffer src);
+        long flush(Continuation co) throws IOException;
+
+        long transferFrom(Continuation co, FileChannel src, long position, long count, long timeoutMillis)
+                throws IOException;
+
+        /**
+         * Flush the outbound buffers without waiting, called by the event loop.
+         */
+        void flushNow();
 
         boolean isOpen();
         void close();
@@ -436,22 +816,141 @@ public class CoGroup {
             return (CoRunner)coChannel();
         }
 
+        /**
+         * Called by the io timer when the read or write operation timed out.
+         */
+        default void expire(){
+            coRunner().resume();
+        }
+
     }// IoChannel
 
-    interface CoTask extends Runnable {}
+    /**
+     * <p>
+     *  The deadline of a read or write operation, driven by the timing wheel of the event loop.
+     *  It's armed when the operation waits, and resumes the waiting coroutine when expired.
+     * </p>
+     */
+    static class IoTimer implements Runnable {
+        final IoGroup ioGroup;
+        final IoChannel ioChan;
 
-    boolean offer(CoTask coTask){
-        return ioGroup.offer(coTask);
-    }
+        private HashedTimingWheel.Timeout timeout;
+        private boolean expired;
+
+        IoTimer(IoGroup ioGroup, IoChannel ioChan){
+            this.ioGroup = ioGroup;
+            this.ioChan  = ioChan;
+        }
+
+        final void arm(final long timeoutMillis){
+            if(timeoutMillis > 0L && timeout == null){
+                timeout = ioGroup.timingWheel.schedule(this, timeoutMillis);
+            }
+        }
+
+        final void check(final String message) throws SocketTimeoutException {
+            if(expired){
+                throw new SocketTimeoutException(message);
+            }
+        }
+
+        final void disarm(){
+            final HashedTimingWheel.Timeout t = timeout;
+            if(t != null){
+                timeout = null;
+                t.cancel();
+            }
+            expired = false;
+        }
+
+        @Override
+        public void run(){
+            timeout = null;
+            expired = true;
+            ioChan.expire();
+        }
+
+    }// IoTimer
+
+    /**
+     * <p>
+     *  The access times of a push channel for idle checking. I/O operations only update the times,
+     *  and the idle states are checked by the periodic sweep of the event loop.
+     * </p>
+     */
+    static class IdleTracker {
+        final static int READER_IDLE = 1, WRITER_IDLE = 2, ALL_IDLE = 4;
+
+        final IoChannel ioChan;
+        IdleTracker prev, next;
+        boolean removed;
+
+        long lastReadTime, lastWriteTime;
+        // The idle states fired since the last read or write
+        int fired;
+        IdleState state;
+
+        IdleTracker(IoChannel ioChan, long now){
+            this.ioChan = ioChan;
+            this.lastReadTime = this.lastWriteTime = now;
+        }
+
+        final void read(final long now){
+            lastReadTime = now;
+            fired &= ~(READER_IDLE | ALL_IDLE);
+        }
+
+        final void write(final long now){
+            lastWriteTime = now;
+            fired &= ~(WRITER_IDLE | ALL_IDLE);
+        }
+
+        final IdleState check(final CoGroup group, final long now){
+            final long readerIdleTime = group.getReaderIdleTime();
+            if(readerIdleTime > 0L && (fired & READER_IDLE) == 0 && now - lastReadTime >= readerIdleTime){
+                fired |= READER_IDLE;
+                return IdleState.READER_IDLE;
+            }
+            final long writerIdleTime = group.getWriterIdleTime();
+            if(writerIdleTime > 0L && (fired & WRITER_IDLE) == 0 && now - lastWriteTime >= writerIdleTime){
+                fired |= WRITER_IDLE;
+                return IdleState.WRITER_IDLE;
+            }
+            final long allIdleTime = group.getAllIdleTime();
+            final long lastTime = Math.max(lastReadTime, lastWriteTime);
+            if(allIdleTime > 0L && (fired & ALL_IDLE) == 0 && now - lastTime >= allIdleTime){
+                fired |= ALL_IDLE;
+                return IdleState.ALL_IDLE;
+            }
+            return null;
+        }
+
+    }// IdleTracker
+
+    interface CoTask extends Runnable {}
 
     <V> CoFuture<V> execute(CoRunner source, final Callable<V> callable){
         final CoGroup group = source.group();
         if(group != this){
             throw new IllegalArgumentException("CoRunner group not this group");
         }
+        // The result must go back to the event loop of the source coroutine
+        final IoGroup ioGroup = currentIoGroup();
+        if(ioGroup == null){
+            throw new IllegalStateException("The current coroutine not in this CoGroup " + name);
+        }
 
         final ExecutorService exec = group.workerThreadPool;
         final CoFutureImpl<V> cf = new CoFutureImpl<>(source);
+        // Overflow: reject if the coQueue can't accept more completions, or the worker waits in put().
+        // The callable isn't run in the loop, since it may block and stall all channels of the loop.
+        if(ioGroup.coQueue.isFull() && getOverflowPolicy() == OverflowPolicy.REJECT){
+            ioGroup.rejectedTasks.increment();
+            cf.setCause(new RejectedExecutionException(ioGroup.name + ": coQueue full"));
+            ioGroup.offer(cf);
+            return cf;
+        }
         exec.execute(() -> {
             try {
                 final V v = callable.call();
@@ -459,22 +958,96 @@ public class CoGroup {
             }catch (final Throwable e){
                 cf.setCause(e);
             }finally {
-                group.offer(cf);
+                ioGroup.put(cf);
             }
         });
         return cf;
     }// execute()
 
+    final int readFile(Continuation co, AsynchronousFileChannel file, ByteBuffer dst, long position)
+            throws IOException {
+        final IoGroup ioGroup = fileIoGroup();
+        final FileIoFuture future = new FileIoFuture((CoRunner)co.getContext());
+        file.read(dst, position, ioGroup, future);
+        return future.await(co);
+    }
+
+    final int writeFile(Continuation co, AsynchronousFileChannel file, ByteBuffer src, long position)
+            throws IOException {
+        final IoGroup ioGroup = fileIoGroup();
+        int bytes = 0;
+        while(src.hasRemaining()){
+            final FileIoFuture future = new FileIoFuture((CoRunner)co.getContext());
+            file.write(src, position + bytes, ioGroup, future);
+            bytes += future.await(co);
+        }
+        return bytes;
+    }
+
+    final IoGroup fileIoGroup(){
+        final IoGroup ioGroup = currentIoGroup();
+        if(ioGroup == null){
+            throw new IllegalStateException("The current coroutine not in this CoGroup " + name);
+        }
+        return ioGroup;
+    }
+
+    /**
+     * <p>
+     *  The file I/O completion that goes back to the event loop of the source coroutine,
+     *  so the coroutine is resumed there instead of in the file channel thread.
+     * </p>
+     */
+    static class FileIoFuture extends CoFutureImpl<Integer> implements CompletionHandler<Integer, IoGroup> {
+
+        FileIoFuture(CoRunner waiter){
+            super(waiter);
+        }
+
+        @Override
+        public void completed(Integer result, IoGroup ioGroup){
+            setValue(result);
+            ioGroup.put(this);
+        }
+
+        @Override
+        public void failed(Throwable cause, IoGroup ioGroup){
+            setCause(cause);
+            ioGroup.put(this);
+        }
+
+        final int await(Continuation co) throws IOException {
+            try {
+                return get(co);
+            } catch (final ExecutionException e){
+                final Throwable cause = e.getCause();
+                if(cause instanceof IOException){
+                    throw (IOException)cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+
+    }// FileIoFuture
+
     final void yield(Continuation co){
-        ioGroup.yield(co);
+        currentIoGroup().yield(co);
     }
 
     final ScheduledCoFuture<?> schedule(CoHandler handler, final long delay){
-        return ioGroup.schedule(handler, delay);
+        IoGroup group = currentIoGroup();
+        if(group == null){
+            group = nextIoGroup();
+        }
+        return group.schedule(handler, delay);
     }
 
     final ScheduledCoFuture<?> schedule(CoHandler handler, long initialDelay, long period){
-        return ioGroup.schedule(handler, initialDelay, period);
+        IoGroup group = currentIoGroup();
+        if(group == null){
+            group = nextIoGroup();
+        }
+        return group.schedule(handler, initialDelay, period);
     }
 
     static class CoFutureImpl<V> extends AbstractCoFuture<V> implements CoTask {
@@ -523,15 +1096,37 @@ public class CoGroup {
     static class ScheduledCoFutureImpl<V> implements ScheduledCoFuture<V>, CoTask {
         final static Logger log = LoggerFactory.getLogger(ScheduledCoFutureImpl.class);
 
-        final CoGroup group;
+        final IoGroup ioGroup;
         final CoHandler handler;
+        final long period;
 
-        private ScheduledFuture<?> schedFuture;
+        private HashedTimingWheel.Timeout timeout;
         private List<CoFutureListener<V>> listeners;
+        private volatile long deadline;
+        private volatile boolean cancelled;
+        private volatile boolean done;
 
-        public ScheduledCoFutureImpl(CoGroup group, CoHandler handler){
-            this.group = group;
+        public ScheduledCoFutureImpl(IoGroup ioGroup, CoHandler handler, long period){
+            this.ioGroup = ioGroup;
             this.handler = handler;
+            this.period  = period;
+        }
+
+        final void start(final long deadline){
+            this.deadline = deadline;
+            if(ioGroup.inGroup()){
+                timeout = ioGroup.timingWheel.scheduleAt(this, deadline);
+                return;
+            }
+            // The timing wheel is only accessed in its event loop
+            final boolean offered = ioGroup.offer(() -> {
+                if(!cancelled){
+                    timeout = ioGroup.timingWheel.scheduleAt(this, deadline);
+                }
+            });
+            if(!offered){
+                throw new RejectedExecutionException(ioGroup.name + ": coQueue full");
+            }
         }
 
         @Override
@@ -541,7 +1136,7 @@ public class CoGroup {
 
         @Override
         public boolean isDone() {
-            return schedFuture.isDone();
+            return (done || cancelled);
         }
 
         @Override
@@ -554,6 +1149,10 @@ public class CoGroup {
 
         @Override
         public void run() {
+            if(cancelled || ioGroup.coGroup.isShutdown()){
+                done = true;
+                return;
+            }
             try{
                 if(listeners != null){
                     for (CoFutureListener<V> lsn : listeners){
@@ -563,27 +1162,42 @@ public class CoGroup {
             }catch (final Throwable e){
                 log.warn("Co future listener error", e);
             }finally {
-                group.startCoroutine(handler);
+                if(period > 0L && !cancelled){
+                    // At fixed rate
+                    deadline += period;
+                    ioGroup.timingWheel.rescheduleAt(timeout, deadline);
+                }else{
+                    done = true;
+                }
+                ioGroup.startCoroutine(handler);
             }
         }
 
-        public void setScheduledFuture(ScheduledFuture<?> schedFuture){
-            this.schedFuture = schedFuture;
-        }
-
         @Override
         public boolean isCancelled() {
-            return schedFuture.isCancelled();
+            return cancelled;
         }
 
+        /**
+         * Cancel this future. The timer is removed at once in its event loop, or
+         * skipped when it expires if cancelled in other threads.
+         */
         @Override
         public boolean cancel(boolean mayInterruptIfRunning) {
-            return schedFuture.cancel(mayInterruptIfRunning);
+            if(isDone()){
+                return false;
+            }
+            cancelled = true;
+            final HashedTimingWheel.Timeout t = timeout;
+            if(t != null && ioGroup.inGroup()){
+                t.cancel();
+            }
+            return true;
         }
 
         @Override
         public long getDelay() {
-            return schedFuture.getDelay(TimeUnit.MILLISECONDS);
+            return (deadline - HashedTimingWheel.currentTime());
         }
 
     }// ScheduleCoFutureImpl
@@ -594,8 +1208,19 @@ public class CoGroup {
         final ServerSocketChannel serverChan;
         final Selector selector;
 
-        public NioGroup(CoGroup coGroup, String name, ServerSocketChannel serverChan, Selector selector){
-            super(coGroup, name);
+        // Accept statistics: written by this event loop only
+        private volatile long acceptCount;
+        private volatile long acceptNanos;
+        // Max channels accepted in one wakeup, at most acceptBatchSize
+        private volatile int maxAcceptBatch;
+
+        // Wakeup coalescing: the loop clears it before select, and only the producer
+        // that sets it wakes up the selector
+        private final AtomicBoolean wakenUp = new AtomicBoolean(true);
+        private final LongAdder wakeupsAvoided = new LongAdder();
+
+        public NioGroup(CoGroup coGroup, String name, int index, ServerSocketChannel serverChan, Selector selector){
+            super(coGroup, name, index);
             this.serverChan = serverChan;
             this.selector = selector;
         }
@@ -605,18 +1230,31 @@ public class CoGroup {
             try{
                 initialize();
 
-                if(coGroup.host != null){
+                if(serverChan != null){
                     log.info("{}: Started on {}:{}", name, coGroup.host, coGroup.port);
                 }else{
                     log.info("{}: Started",  name);
                 }
 
+                long ioNanos = 0L;
                 for(;!coGroup.isStopped();){
                     // 1. result handlers
-                    handleCoTasks();
+                    handleCoTasks(ioNanos);
+                    flushChannels();
 
                     // 2. select events
-                    final int n = selector.select(1000L);
+                    wakenUp.set(false);
+                    final int n;
+                    final long timeout;
+                    if(!hasCoTasks() && (timeout = pollTimeout()) > 0L){
+                        n = selector.select(timeout);
+                    }else{
+                        // A task offered before clearing wakenUp
+                        n = selector.selectNow();
+                    }
+                    wakenUp.set(true);
+                    currentTime = HashedTimingWheel.currentTime();
+                    final long ioStart = System.nanoTime();
                     if(n > 0){
                         final Set<SelectionKey> keys = selector.selectedKeys();
                         final Iterator<SelectionKey> i = keys.iterator();
@@ -641,17 +1279,19 @@ public class CoGroup {
                             }
                         }// key-loop
                     }
+                    ioNanos = System.nanoTime() - ioStart;
 
-                    // 3. handle shutdown
+                    // 3. expire timers
+                    timingWheel.expire();
+
+                    // 4. handle shutdown
                     if(coGroup.isShutdown()){
                         log.debug("{}: shutdown", name);
-                        // 3.1 not accept any new connection
+                        // 4.1 not accept any new connection
                         IoUtils.close(serverChan);
-                        // 3.2 shutdown timer service
-                        coGroup.timerService.shutdown();
-                        // 3.3 close pull channel pool
-                        coGroup.closePullChannelPool();
-                        // 3.4 check other connections closed
+                        // 4.2 close pull channel pool
+                        closePullChannelPool();
+                        // 4.3 check other connections closed
                         final Set<SelectionKey> keys = selector.keys();
                         final int keySize = keys.size();
                         if(keySize == 0){
@@ -679,21 +1319,47 @@ public class CoGroup {
         }
 
         @Override
-        protected boolean offer(CoTask handler){
-            final boolean succ = super.offer(handler);
-            if(succ){
+        protected void wakeup(){
+            if(wakenUp.compareAndSet(false, true)){
                 selector.wakeup();
+            }else{
+                wakeupsAvoided.increment();
             }
-            return succ;
+        }
+
+        final long wakeupsAvoided(){
+            return wakeupsAvoided.sum();
         }
 
         private void handleAcception(final SelectionKey key) throws IOException {
             final ServerSocketChannel serverChan = (ServerSocketChannel)key.channel();
-            final SocketChannel chan = serverChan.accept();
-            if(chan == null){
-                return;
+            final boolean reusePort = coGroup.isReusePort();
+            final int batchSize = coGroup.getAcceptBatchSize();
+            int i = 0;
+            for(; i < batchSize; ++i){
+                final SocketChannel chan = serverChan.accept();
+                if(chan == null){
+                    break;
+                }
+
+                // The kernel has sharded channels among listeners in reuse port mode
+                final NioGroup ioGroup = reusePort? this: (NioGroup)coGroup.nextIoGroup();
+                if(ioGroup == this){
+                    initChannel(chan);
+                    continue;
+                }
+                // Hand over the channel to its event loop
+                if(!ioGroup.offer(() -> { ioGroup.initChannel(chan); })){
+                    IoUtils.close(chan);
+                }
             }
+            if(i > maxAcceptBatch){
+                maxAcceptBatch = i;
+            }
+        }
 
+        private void initChannel(final SocketChannel chan){
+            final long ts = System.nanoTime();
             boolean failed = true;
             PushCoChannel coChan = null;
             try{
@@ -719,9 +1385,23 @@ public class CoGroup {
                 if(failed){
                     IoUtils.close(chan);
                 }
+                acceptNanos += System.nanoTime() - ts;
+                ++acceptCount;
             }
         }
 
+        final long acceptCount(){
+            return acceptCount;
+        }
+
+        final long acceptNanos(){
+            return acceptNanos;
+        }
+
+        final int maxAcceptBatch(){
+            return maxAcceptBatch;
+        }
+
         protected void handleConnection(final SelectionKey key){
             final NioConnectHandler handler = (NioConnectHandler)key.attachment();
             key.attach(null);
@@ -749,22 +1429,50 @@ public class CoGroup {
         }
 
         protected void handleRead(final SelectionKey key) {
-            final IoChannel ioChan = (IoChannel) key.attachment();
-            ioChan.coRunner().resume();
+            final NioChannel ioChan = (NioChannel) key.attachment();
+            ioChan.ready(SelectionKey.OP_READ);
         }
 
         protected void handleWrite(final SelectionKey key) {
-            final IoChannel ioChan = (IoChannel) key.attachment();
-            ioChan.coRunner().resume();
-        }
-
-        private void handleCoTasks(){
-            for(;;){
-                final CoTask coTask = coQueue.poll();
+            final NioChannel ioChan = (NioChannel) key.attachment();
+            ioChan.ready(SelectionKey.OP_WRITE);
+        }
+
+        /**
+         * <p>
+         *  Run tasks in the budget of ioRatio and maxTasksPerLoop, so that a burst of tasks
+         *  can't delay I/O of channels. Only the tasks queued before this drain run, or a coroutine
+         *  that keeps yielding refills the queue and the drain never ends. The remaining tasks
+         *  run in the next loop.
+         * </p>
+         * @param ioNanos the I/O time of the last loop
+         */
+        final void handleCoTasks(final long ioNanos){
+            final int ioRatio = coGroup.getIoRatio();
+            final int maxTasks = coGroup.getMaxTasksPerLoop();
+            final boolean timed = (ioRatio < 100);
+            final long deadline = timed? System.nanoTime() + ioNanos * (100 - ioRatio) / ioRatio: 0L;
+            int locals = localQueue.size(), remotes = coQueue.size();
+            for(int i = 1; locals > 0 || remotes > 0; ++i){
+                final CoTask coTask;
+                if(locals > 0){
+                    --locals;
+                    coTask = localQueue.poll();
+                }else{
+                    --remotes;
+                    coTask = coQueue.poll();
+                }
                 if(coTask == null){
                     break;
                 }
                 coTask.run();
+                if(i >= maxTasks){
+                    break;
+                }
+                // Check the deadline every 64 tasks for nanoTime() isn't cheap
+                if(timed && (i & 0x3F) == 0 && System.nanoTime() >= deadline){
+                    break;
+                }
             }
         }
 
@@ -774,10 +1482,9 @@ public class CoGroup {
         }
 
         @Override
-        protected void cleanup(){
+        protected void close(){
             IoUtils.close(serverChan);
             IoUtils.close(selector);
-            super.cleanup();
         }
 
         @Override
@@ -815,7 +1522,9 @@ public class CoGroup {
             }
 
             public void connect(){
-                ioGroup.offer(this);
+                if(!ioGroup.offer(this)){
+                    throw new RejectedExecutionException(ioGroup.name + ": coQueue full");
+                }
             }
 
             public void setCause(Throwable cause){
@@ -907,7 +1616,15 @@ public class CoGroup {
             final CoChannel coChan;
             final NioGroup ioGroup;
             final SocketChannel chan;
+            final IoTimer ioTimer;
+            final IdleTracker idleTracker;
             private SelectionKey selKey;
+            // The operation that the coroutine suspends in: OP_READ, OP_WRITE or 0
+            private int waitOps;
+            // The outbound buffers of writeLater(), flushed by flush() or the event loop
+            private ArrayDeque<ByteBuffer> outbound;
+            private ByteBuffer[] gather;
+            private boolean flushScheduled;
 
             public NioChannel(CoChannel coChan, NioGroup ioGroup, SocketChannel chan){
                 this(coChan, ioGroup, chan, null);
@@ -917,6 +1634,8 @@ public class CoGroup {
                 this.coChan = coChan;
                 this.ioGroup = ioGroup;
                 this.chan = chan;
+                this.ioTimer = new IoTimer(ioGroup, this);
+                this.idleTracker = ioGroup.trackIdle(this);
                 this.selKey = selKey;
                 if(selKey != null){
                     selKey.attach(this);
@@ -929,7 +1648,7 @@ public class CoGroup {
             }
 
             @Override
-            public int read(Continuation co, ByteBuffer dst) throws IOException {
+            public int read(Continuation co, ByteBuffer dst, long timeoutMillis) throws IOException {
                 if(coChan != co.getContext()){
                     throw new IllegalArgumentException("Continuation context not this CoChannel");
                 }
@@ -953,44 +1672,310 @@ public class CoGroup {
                             }
                             enableRead();
                             readable = true;
+                            ioTimer.arm(timeoutMillis);
+                            waitOps = SelectionKey.OP_READ;
                             co.suspend();
+                            waitOps = 0;
+                            ioTimer.check("Read timed out");
                             continue;
                         }
                         n += i;
                     }
                     return n;
                 }finally {
+                    if(n > 0 && idleTracker != null){
+                        idleTracker.read(ioGroup.currentTime);
+                    }
                     if(readable){
-                        disableRead();
+                        // Sticky read: keep OP_READ until paused or fired out of read
+                        if(!ioGroup.coGroup.isStickyRead()){
+                            disableRead();
+                        }
+                        ioTimer.disarm();
                     }
                 }
             }
 
             @Override
-            public int write(Continuation co, ByteBuffer src) throws IOException {
+            public int write(Continuation co, ByteBuffer src, long timeoutMillis) throws IOException {
                 if(coChan != co.getContext()){
                     throw new IllegalArgumentException("Continuation context not this CoChannel");
                 }
                 if(!src.hasRemaining()){
                     return 0;
                 }
+                if(hasOutbound()){
+                    flush(co);
+                }
                 int n = 0;
+                boolean writable = false;
                 try{
-                    enableWrite(); // must first enable write?
-                    co.suspend();
+                    // Optimistic write: wait for OP_WRITE only when the socket buffer is full
                     for(;src.hasRemaining();){
                         final int i = chan.write(src);
                         if(i == 0){
                             enableWrite();
+                            writable = true;
+                            ioTimer.arm(timeoutMillis);
+                            waitOps = SelectionKey.OP_WRITE;
+                            co.suspend();
+                            waitOps = 0;
+                            ioTimer.check("Write timed out");
+                            continue;
+                        }
+                        n += i;
+                    }
+                    return n;
+                }finally {
+                    if(n > 0 && idleTracker != null){
+                        idleTracker.write(ioGroup.currentTime);
+                    }
+                    if(writable){
+                        disableWrite();
+                        ioTimer.disarm();
+                    }
+                    scheduleFlush();
+                }
+            }
+
+            @Override
+            public long read(Continuation co, ByteBuffer[] dsts, long timeoutMillis) throws IOException {
+                if(coChan != co.getContext()){
+                    throw new IllegalArgumentException("Continuation context not this CoChannel");
+                }
+                if(IoUtils.remaining(dsts) == 0L){
+                    return 0L;
+                }
+                boolean readable = false;
+                try{
+                    for(;;){
+                        final long i = chan.read(dsts);
+                        if(i != 0L){
+                            if(i > 0L && idleTracker != null){
+                                idleTracker.read(ioGroup.currentTime);
+                            }
+                            return i;
+                        }
+                        enableRead();
+                        readable = true;
+                        ioTimer.arm(timeoutMillis);
+                        waitOps = SelectionKey.OP_READ;
+                        co.suspend();
+                        waitOps = 0;
+                        ioTimer.check("Read timed out");
+                    }
+                }finally {
+                    if(readable){
+                        if(!ioGroup.coGroup.isStickyRead()){
+                            disableRead();
+                        }
+                        ioTimer.disarm();
+                    }
+                }
+            }
+
+            @Override
+            public long write(Continuation co, ByteBuffer[] srcs, long timeoutMillis) throws IOException {
+                if(coChan != co.getContext()){
+                    throw new IllegalArgumentException("Continuation context not this CoChannel");
+                }
+                final long remaining = IoUtils.remaining(srcs);
+                if(remaining > 0L && hasOutbound()){
+                    flush(co);
+                }
+                long n = 0L;
+                boolean writable = false;
+                try{
+                    for(;n < remaining;){
+                        final long i = chan.write(srcs);
+                        if(i == 0L){
+                            enableWrite();
+                            writable = true;
+                            ioTimer.arm(timeoutMillis);
+                            waitOps = SelectionKey.OP_WRITE;
+                            co.suspend();
+                            waitOps = 0;
+                            ioTimer.check("Write timed out");
+                            continue;
+                        }
+                        n += i;
+                    }
+                    return n;
+                }finally {
+                    if(n > 0L && idleTracker != null){
+                        idleTracker.write(ioGroup.currentTime);
+                    }
+                    if(writable){
+                        disableWrite();
+                        ioTimer.disarm();
+                    }
+                    scheduleFlush();
+                }
+            }
+
+            @Override
+            public void writeLater(final ByteBuffer src){
+                if(!ioGroup.inGroup()){
+                    throw new IllegalStateException("writeLater() not in the event loop " + ioGroup.name);
+                }
+                if(!src.hasRemaining()){
+                    return;
+                }
+                if(outbound == null){
+                    outbound = new ArrayDeque<>();
+                    gather = new ByteBuffer[IoGroup.GATHER_SIZE];
+                }
+                outbound.offer(src);
+                scheduleFlush();
+            }
+
+            @Override
+            public long flush(Continuation co) throws IOException {
+                if(coChan != co.getContext()){
+                    throw new IllegalArgumentException("Continuation context not this CoChannel");
+                }
+                long n = 0L;
+                boolean writable = false;
+                try{
+                    for(;hasOutbound();){
+                        n += writeOutbound();
+                        if(!hasOutbound()){
+                            break;
+                        }
+                        enableWrite();
+                        writable = true;
+                        waitOps = SelectionKey.OP_WRITE;
+                        co.suspend();
+                        waitOps = 0;
+                    }
+                    return n;
+                }finally {
+                    if(writable){
+                        disableWrite();
+                    }
+                }
+            }
+
+            /**
+             * Zero-copy transfer by FileChannel.transferTo(), e.g. sendfile, waiting for OP_WRITE
+             * when the socket buffer is full.
+             */
+            @Override
+            public long transferFrom(Continuation co, FileChannel src, long position, long count,
+                                     long timeoutMillis) throws IOException {
+                if(coChan != co.getContext()){
+                    throw new IllegalArgumentException("Continuation context not this CoChannel");
+                }
+                if(count <= 0L){
+                    return 0L;
+                }
+                if(hasOutbound()){
+                    flush(co);
+                }
+                long n = 0L;
+                boolean writable = false;
+                try{
+                    for(;n < count;){
+                        final long i = src.transferTo(position + n, count - n, chan);
+                        if(i == 0L){
+                            if(position + n >= src.size()){
+                                // End of file
+                                break;
+                            }
+                            enableWrite();
+                            writable = true;
+                            ioTimer.arm(timeoutMillis);
+                            waitOps = SelectionKey.OP_WRITE;
                             co.suspend();
+                            waitOps = 0;
+                            ioTimer.check("Write timed out");
                             continue;
                         }
                         n += i;
                     }
                     return n;
                 }finally {
-                    disableWrite();
+                    if(n > 0L && idleTracker != null){
+                        idleTracker.write(ioGroup.currentTime);
+                    }
+                    if(writable){
+                        disableWrite();
+                        ioTimer.disarm();
+                    }
+                    scheduleFlush();
+                }
+            }
+
+            @Override
+            public void flushNow(){
+                flushScheduled = false;
+                if(waitOps == SelectionKey.OP_WRITE || !chan.isOpen()){
+                    // The waiting writer flushes after its write
+                    return;
+                }
+                try{
+                    if(hasOutbound()){
+                        writeOutbound();
+                    }
+                    // Continue in OP_WRITE readiness
+                    if(hasOutbound()){
+                        enableWrite();
+                    }else{
+                        disableWrite();
+                    }
+                }catch(final IOException e){
+                    log.debug(ioGroup.name + ": flush error", e);
+                    IoUtils.close(coChan);
+                }
+            }
+
+            final boolean hasOutbound(){
+                return (outbound != null && !outbound.isEmpty());
+            }
+
+            private void scheduleFlush(){
+                if(!flushScheduled && hasOutbound()){
+                    flushScheduled = true;
+                    ioGroup.flushLater(this);
+                }
+            }
+
+            /**
+             * Gathering writes of the outbound buffers until the socket buffer full.
+             *
+             * @return the bytes written
+             * @throws IOException if an I/O error occurs
+             */
+            private long writeOutbound() throws IOException {
+                final ArrayDeque<ByteBuffer> outbound = this.outbound;
+                final ByteBuffer[] gather = this.gather;
+                long n = 0L;
+                for(;!outbound.isEmpty();){
+                    int k = 0;
+                    for(final ByteBuffer buffer: outbound){
+                        if(k == gather.length){
+                            break;
+                        }
+                        gather[k++] = buffer;
+                    }
+                    final long i;
+                    try{
+                        i = chan.write(gather, 0, k);
+                    }finally {
+                        Arrays.fill(gather, 0, k, null);
+                    }
+                    for(;!outbound.isEmpty() && !outbound.peek().hasRemaining();){
+                        outbound.poll();
+                    }
+                    if(i == 0L){
+                        break;
+                    }
+                    n += i;
                 }
+                if(n > 0L && idleTracker != null){
+                    idleTracker.write(ioGroup.currentTime);
+                }
+                return n;
             }
 
             @Override
@@ -1001,12 +1986,62 @@ public class CoGroup {
             @Override
             public void close() {
                 IoUtils.close(chan);
+                ioGroup.untrackIdle(idleTracker);
+                if(outbound != null){
+                    outbound.clear();
+                }
+                if(waitOps != 0){
+                    // Closed by others: resume the waiting coroutine, then its read or write fails
+                    ioGroup.offer(() -> {
+                        if(waitOps != 0){
+                            waitOps = 0;
+                            coRunner().resume();
+                        }
+                    });
+                }
                 if(log.isDebugEnabled()) {
                     final CoGroup group = ioGroup.coGroup;
                     log.debug("{}: {} closed", group.name, coRunner().name);
                 }
             }
 
+            /**
+             * <p>
+             *  The channel is ready for the op: resume the coroutine if it waits for the op, otherwise
+             *  the op is armed but not waited, e.g. sticky OP_READ, so disarm it.
+             * </p>
+             * @param op OP_READ or OP_WRITE
+             */
+            final void ready(final int op){
+                if((waitOps & op) != 0){
+                    coRunner().resume();
+                    return;
+                }
+                if(op == SelectionKey.OP_READ){
+                    disableRead();
+                }else{
+                    // Flush the outbound buffers, or disarm
+                    flushNow();
+                }
+            }
+
+            final void waitReadable(Continuation co) throws IOException {
+                if(coChan != co.getContext()){
+                    throw new IllegalArgumentException("Continuation context not this CoChannel");
+                }
+                enableRead();
+                waitOps = SelectionKey.OP_READ;
+                co.suspend();
+                waitOps = 0;
+                if(!ioGroup.coGroup.isStickyRead()){
+                    disableRead();
+                }
+            }
+
+            final void pauseRead(){
+                disableRead();
+            }
+
             protected void enableRead()throws IOException {
                 final int op = SelectionKey.OP_READ;
                 if(selKey == null){
@@ -1067,12 +2102,74 @@ public class CoGroup {
 
             @Override
             public int read(Continuation co, ByteBuffer dst) throws IOException {
-                return ioChan.read(co, dst);
+                return ioChan.read(co, dst, 0L);
+            }
+
+            @Override
+            public int read(Continuation co, ByteBuffer dst, long timeoutMillis) throws IOException {
+                return ioChan.read(co, dst, timeoutMillis);
             }
 
             @Override
             public int write(Continuation co, ByteBuffer src) throws IOException {
-                return ioChan.write(co, src);
+                return ioChan.write(co, src, 0L);
+            }
+
+            @Override
+            public int write(Continuation co, ByteBuffer src, long timeoutMillis) throws IOException {
+                return ioChan.write(co, src, timeoutMillis);
+            }
+
+            @Override
+            protected void waitReadable(Continuation co) throws IOException {
+                ioChan.waitReadable(co);
+            }
+
+            @Override
+            public void pauseRead(){
+                ioChan.pauseRead();
+            }
+
+            @Override
+            public long read(Continuation co, ByteBuffer[] dsts) throws IOException {
+                return ioChan.read(co, dsts, 0L);
+            }
+
+            @Override
+            public long read(Continuation co, ByteBuffer[] dsts, long timeoutMillis) throws IOException {
+                return ioChan.read(co, dsts, timeoutMillis);
+            }
+
+            @Override
+            public long write(Continuation co, ByteBuffer[] srcs) throws IOException {
+                return ioChan.write(co, srcs, 0L);
+            }
+
+            @Override
+            public long write(Continuation co, ByteBuffer[] srcs, long timeoutMillis) throws IOException {
+                return ioChan.write(co, srcs, timeoutMillis);
+            }
+
+            @Override
+            public void writeLater(ByteBuffer src) {
+                ioChan.writeLater(src);
+            }
+
+            @Override
+            public long flush(Continuation co) throws IOException {
+                return ioChan.flush(co);
+            }
+
+            @Override
+            public long transferFrom(Continuation co, FileChannel src, long position, long count)
+                    throws IOException {
+                return ioChan.transferFrom(co, src, position, count, 0L);
+            }
+
+            @Override
+            public long transferFrom(Continuation co, FileChannel src, long position, long count,
+                                     long timeoutMillis) throws IOException {
+                return ioChan.transferFrom(co, src, position, count, timeoutMillis);
             }
 
             @Override
@@ -1083,6 +2180,7 @@ public class CoGroup {
             @Override
             public void close() {
                 ioChan.close();
+                releaseBuffers();
             }
         }// NioPushCoChannel
 
@@ -1100,12 +2198,75 @@ public class CoGroup {
 
             @Override
             public int read(Continuation co, ByteBuffer dst) throws IOException {
-                return ioChan.read(co, dst);
+                return received(ioChan.read(co, dst, 0L));
+            }
+
+            @Override
+            public int read(Continuation co, ByteBuffer dst, long timeoutMillis) throws IOException {
+                return received(ioChan.read(co, dst, timeoutMillis));
             }
 
             @Override
             public int write(Continuation co, ByteBuffer src) throws IOException {
-                return ioChan.write(co, src);
+                return sent(ioChan.write(co, src, 0L));
+            }
+
+            @Override
+            public int write(Continuation co, ByteBuffer src, long timeoutMillis) throws IOException {
+                return sent(ioChan.write(co, src, timeoutMillis));
+            }
+
+            @Override
+            protected void waitReadable(Continuation co) throws IOException {
+                ioChan.waitReadable(co);
+            }
+
+            @Override
+            public void pauseRead(){
+                ioChan.pauseRead();
+            }
+
+            @Override
+            public long read(Continuation co, ByteBuffer[] dsts) throws IOException {
+                return received(ioChan.read(co, dsts, 0L));
+            }
+
+            @Override
+            public long read(Continuation co, ByteBuffer[] dsts, long timeoutMillis) throws IOException {
+                return received(ioChan.read(co, dsts, timeoutMillis));
+            }
+
+            @Override
+            public long write(Continuation co, ByteBuffer[] srcs) throws IOException {
+                return sent(ioChan.write(co, srcs, 0L));
+            }
+
+            @Override
+            public long write(Continuation co, ByteBuffer[] srcs, long timeoutMillis) throws IOException {
+                return sent(ioChan.write(co, srcs, timeoutMillis));
+            }
+
+            @Override
+            public void writeLater(ByteBuffer src) {
+                ioChan.writeLater(src);
+                sent((long)src.remaining());
+            }
+
+            @Override
+            public long flush(Continuation co) throws IOException {
+                return sent(ioChan.flush(co));
+            }
+
+            @Override
+            public long transferFrom(Continuation co, FileChannel src, long position, long count)
+                    throws IOException {
+                return sent(ioChan.transferFrom(co, src, position, count, 0L));
+            }
+
+            @Override
+            public long transferFrom(Continuation co, FileChannel src, long position, long count,
+                                     long timeoutMillis) throws IOException {
+                return sent(ioChan.transferFrom(co, src, position, count, timeoutMillis));
             }
 
             @Override
@@ -1121,6 +2282,7 @@ public class CoGroup {
             @Override
             public void close() {
                 ioChan.close();
+                releaseBuffers();
                 super.stop();
             }
         }// NioPullCoChannel
@@ -1131,17 +2293,15 @@ public class CoGroup {
         final static Logger log = LoggerFactory.getLogger(AioGroup.class);
 
         final AsynchronousServerSocketChannel serverChan;
-        final ExecutorService ioExec;
         final AsynchronousChannelGroup chanGroup;
         AioCoAcceptor coAcceptor = null;
 
         private int ioOps;
 
-        public AioGroup(CoGroup coGroup, String name, AsynchronousServerSocketChannel serverChan,
-                        ExecutorService ioExec, AsynchronousChannelGroup chanGroup){
-            super(coGroup, name);
+        public AioGroup(CoGroup coGroup, String name, int index, AsynchronousServerSocketChannel serverChan,
+                        AsynchronousChannelGroup chanGroup){
+            super(coGroup, name, index);
             this.serverChan = serverChan;
-            this.ioExec     = ioExec;
             this.chanGroup  = chanGroup;
         }
 
@@ -1171,20 +2331,24 @@ public class CoGroup {
                 }
 
                 for (;!coGroup.isStopped();){
-                    final CoTask handler = coQueue.poll(1000L, TimeUnit.MILLISECONDS);
+                    CoTask handler = localQueue.poll();
+                    if(handler == null){
+                        handler = coQueue.poll(pollTimeout(), TimeUnit.MILLISECONDS);
+                    }
+                    currentTime = HashedTimingWheel.currentTime();
                     if(handler != null){
                         handler.run();
                     }
+                    timingWheel.expire();
+                    flushChannels();
                     if(coGroup.isShutdown()){
                         // 1. close acceptor
                         stopAcceptor();
-                        // 2. shutdown timer service
-                        coGroup.timerService.shutdown();
-                        // 3. close pull channel pool
-                        coGroup.closePullChannelPool();
-                        // 4. handle remaining CoTasks
+                        // 2. close pull channel pool
+                        closePullChannelPool();
+                        // 3. handle remaining CoTasks
                         for(;;){
-                            final CoTask h = coQueue.poll();
+                            final CoTask h = pollCoTask();
                             if(h == null){
                                 break;
                             }
@@ -1208,11 +2372,15 @@ public class CoGroup {
             stopAcceptor();
             // wait for the channel group
             sleep(50L);
-            chanGroup.shutdown();
-            ioExec.shutdown();
             super.cleanup();
         }
 
+        @Override
+        protected void close(){
+            IoUtils.close(serverChan);
+            chanGroup.shutdown();
+        }
+
         final static void sleep(final long millis){
             try {
                 Thread.sleep(100L);
@@ -1221,6 +2389,25 @@ public class CoGroup {
             }
         }
 
+        final void initChannel(final AsynchronousSocketChannel chan){
+            boolean failed = true;
+            try{
+                final AioPushCoChannel coChan = new AioPushCoChannel(this, chan);
+                log.debug("{}: accept a new coChannel {}", name, coChan.name);
+                coGroup.channelInitializer().initialize(coChan, true);
+                if(coChan.handler() == null){
+                    log.warn("{}: Channel handler not set, so close the channel {}", name, coChan.name);
+                    return;
+                }
+                coChan.resume();
+                failed = false;
+            }finally{
+                if(failed){
+                    IoUtils.close(chan);
+                }
+            }
+        }
+
         final void stopAcceptor(){
             if(coAcceptor != null){
                 coAcceptor.stop();
@@ -1358,13 +2545,13 @@ public class CoGroup {
             public void completed(Void none, ConnectRequest request) {
                 // This handler thread-safe is guaranteed by CoQueue.
                 // @since 2018-09-02 little-pan
-                aioGroup.offer(this);
+                aioGroup.put(this);
             }
 
             @Override
             public void failed(Throwable cause, ConnectRequest request) {
                 this.cause  = cause;
-                aioGroup.offer(this);
+                aioGroup.put(this);
             }
         }
 
@@ -1418,26 +2605,32 @@ public class CoGroup {
                 return resume();
             }
 
-            class AcceptResultHandler implements CoTask {
-                final AsynchronousSocketChannel chan;
-                final Throwable cause;
-
-                public AcceptResultHandler(AsynchronousSocketChannel chan){
-                    this(chan, null);
-                }
+            // Only one accept in flight, so the handler is also the completion task
+            class AcceptHandler implements CompletionHandler<AsynchronousSocketChannel, AioCoAcceptor>, CoTask {
+                private AsynchronousSocketChannel chan;
+                private Throwable cause;
 
-                public AcceptResultHandler(Throwable cause){
-                    this(null, cause);
+                @Override
+                public void completed(AsynchronousSocketChannel result, AioCoAcceptor acceptor){
+                    this.chan = result;
+                    this.cause = null;
+                    aioGroup.put(this);
                 }
 
-                private AcceptResultHandler(AsynchronousSocketChannel chan, Throwable cause){
-                    this.chan = chan;
-                    this.cause= cause;
+                @Override
+                public void failed(Throwable cause, AioCoAcceptor acceptor){
+                    this.chan = null;
+                    this.cause = cause;
+                    aioGroup.put(this);
                 }
 
                 @Override
                 public void run(){
                     final AioCoAcceptor acceptor = AioCoAcceptor.this;
+                    final AsynchronousSocketChannel chan = this.chan;
+                    final Throwable cause = this.cause;
+                    this.chan = null;
+                    this.cause = null;
                     if(cause != null){
                         if(acceptor.stopped && (cause instanceof AsynchronousCloseException)){
                             log.debug("{}: Closed", name);
@@ -1447,43 +2640,23 @@ public class CoGroup {
                         log.warn(name+" error", cause);
                         return;
                     }
-                    // Start a coroutine for handle socket channel
-                    boolean failed = true;
+                    // Start a coroutine for handle socket channel in its event loop. The completions
+                    // of the channel come from the channel group of this acceptor, but go to the
+                    // coQueue of the owner loop; each loop has its own listener in reuse port mode.
                     try{
                         final AioGroup aioGroup = acceptor.aioGroup;
-                        final AioPushCoChannel coChan = new AioPushCoChannel(aioGroup, chan);
-                        log.debug("{}: accept a new coChannel {}", name, coChan.name);
-                        coGroup.channelInitializer().initialize(coChan, true);
-                        if(coChan.handler() == null){
-                            log.warn("{}: Channel handler not set, so close the channel");
+                        final AioGroup ioGroup = coGroup.isReusePort()? aioGroup: (AioGroup)coGroup.nextIoGroup();
+                        if(ioGroup == aioGroup){
+                            aioGroup.initChannel(chan);
+                        }else if(!ioGroup.offer(() -> { ioGroup.initChannel(chan); })){
                             IoUtils.close(chan);
-                            return;
                         }
-                        coChan.resume();
-                        failed = false;
                     }finally{
                         acceptor.resume();
-                        if(failed){
-                            IoUtils.close(chan);
-                        }
                     }
                 }
             }
 
-            class AcceptHandler implements CompletionHandler<AsynchronousSocketChannel, AioCoAcceptor> {
-
-                @Override
-                public void completed(AsynchronousSocketChannel result, AioCoAcceptor acceptor){
-                    aioGroup.offer(new AcceptResultHandler(result));
-                }
-
-                @Override
-                public void failed(Throwable cause, AioCoAcceptor acceptor){
-                    aioGroup.offer(new AcceptResultHandler(cause));
-                }
-
-            }
-
         }// CoAcceptor
 
         static class AioPushCoChannel extends PushCoChannel {
@@ -1496,12 +2669,64 @@ public class CoGroup {
 
             @Override
             public int read(Continuation co, ByteBuffer dst) throws IOException {
-                return ioChan.read(co, dst);
+                return ioChan.read(co, dst, 0L);
+            }
+
+            @Override
+            public int read(Continuation co, ByteBuffer dst, long timeoutMillis) throws IOException {
+                return ioChan.read(co, dst, timeoutMillis);
             }
 
             @Override
             public int write(Continuation co, ByteBuffer src) throws IOException {
-                return ioChan.write(co, src);
+                return ioChan.write(co, src, 0L);
+            }
+
+            @Override
+            public int write(Continuation co, ByteBuffer src, long timeoutMillis) throws IOException {
+                return ioChan.write(co, src, timeoutMillis);
+            }
+
+            @Override
+            public long read(Continuation co, ByteBuffer[] dsts) throws IOException {
+                return ioChan.read(co, dsts, 0L);
+            }
+
+            @Override
+            public long read(Continuation co, ByteBuffer[] dsts, long timeoutMillis) throws IOException {
+                return ioChan.read(co, dsts, timeoutMillis);
+            }
+
+            @Override
+            public long write(Continuation co, ByteBuffer[] srcs) throws IOException {
+                return ioChan.write(co, srcs, 0L);
+            }
+
+            @Override
+            public long write(Continuation co, ByteBuffer[] srcs, long timeoutMillis) throws IOException {
+                return ioChan.write(co, srcs, timeoutMillis);
+            }
+
+            @Override
+            public void writeLater(ByteBuffer src) {
+                ioChan.writeLater(src);
+            }
+
+            @Override
+            public long flush(Continuation co) throws IOException {
+                return ioChan.flush(co);
+            }
+
+            @Override
+            public long transferFrom(Continuation co, FileChannel src, long position, long count)
+                    throws IOException {
+                return ioChan.transferFrom(co, src, position, count, 0L);
+            }
+
+            @Override
+            public long transferFrom(Continuation co, FileChannel src, long position, long count,
+                                     long timeoutMillis) throws IOException {
+                return ioChan.transferFrom(co, src, position, count, timeoutMillis);
             }
 
             @Override
@@ -1509,9 +2734,15 @@ public class CoGroup {
                 return ioChan.isOpen();
             }
 
+            @Override
+            protected boolean isIoPending(){
+                return ioChan.isIoPending();
+            }
+
             @Override
             public void close() {
                 ioChan.close();
+                releaseBuffers();
             }
         }// AioPushCoChannel
 
@@ -1525,12 +2756,65 @@ public class CoGroup {
 
             @Override
             public int read(Continuation co, ByteBuffer dst) throws IOException {
-                return ioChan.read(co, dst);
+                return received(ioChan.read(co, dst, 0L));
+            }
+
+            @Override
+            public int read(Continuation co, ByteBuffer dst, long timeoutMillis) throws IOException {
+                return received(ioChan.read(co, dst, timeoutMillis));
             }
 
             @Override
             public int write(Continuation co, ByteBuffer src) throws IOException {
-                return ioChan.write(co, src);
+                return sent(ioChan.write(co, src, 0L));
+            }
+
+            @Override
+            public int write(Continuation co, ByteBuffer src, long timeoutMillis) throws IOException {
+                return sent(ioChan.write(co, src, timeoutMillis));
+            }
+
+            @Override
+            public long read(Continuation co, ByteBuffer[] dsts) throws IOException {
+                return received(ioChan.read(co, dsts, 0L));
+            }
+
+            @Override
+            public long read(Continuation co, ByteBuffer[] dsts, long timeoutMillis) throws IOException {
+                return received(ioChan.read(co, dsts, timeoutMillis));
+            }
+
+            @Override
+            public long write(Continuation co, ByteBuffer[] srcs) throws IOException {
+                return sent(ioChan.write(co, srcs, 0L));
+            }
+
+            @Override
+            public long write(Continuation co, ByteBuffer[] srcs, long timeoutMillis) throws IOException {
+                return sent(ioChan.write(co, srcs, timeoutMillis));
+            }
+
+            @Override
+            public void writeLater(ByteBuffer src) {
+                ioChan.writeLater(src);
+                sent((long)src.remaining());
+            }
+
+            @Override
+            public long flush(Continuation co) throws IOException {
+                return sent(ioChan.flush(co));
+            }
+
+            @Override
+            public long transferFrom(Continuation co, FileChannel src, long position, long count)
+                    throws IOException {
+                return sent(ioChan.transferFrom(co, src, position, count, 0L));
+            }
+
+            @Override
+            public long transferFrom(Continuation co, FileChannel src, long position, long count,
+                                     long timeoutMillis) throws IOException {
+                return sent(ioChan.transferFrom(co, src, position, count, timeoutMillis));
             }
 
             @Override
@@ -1538,6 +2822,11 @@ public class CoGroup {
                 return ioChan.isOpen();
             }
 
+            @Override
+            protected boolean isIoPending(){
+                return ioChan.isIoPending();
+            }
+
             @Override
             public void stop(){
                 this.close();
@@ -1546,6 +2835,7 @@ public class CoGroup {
             @Override
             public void close() {
                 ioChan.close();
+                releaseBuffers();
                 super.stop();
             }
         }// AioPullCoChannel
@@ -1556,12 +2846,30 @@ public class CoGroup {
             final AioGroup aioGroup;
             final AsynchronousSocketChannel chan;
             final IoHandler handler = new IoHandler();
-            private IoResultHandler result;
+            final VectorIoHandler vectorHandler = new VectorIoHandler();
+            final FlushHandler flushHandler = new FlushHandler();
+            // The mapped chunk size of transferFrom()
+            final static long TRANSFER_CHUNK_SIZE = 4L << 20;
+            final IoTimer ioTimer;
+            final IdleTracker idleTracker;
+            // The reusable result slot of the pending read or write
+            final IoResult result = new IoResult();
+            // The coroutine waits for the completion of a read or write
+            private boolean ioPending;
+            private boolean writing;
+            // The outbound buffers of writeLater(), flushed by async gathering writes
+            private ArrayDeque<ByteBuffer> outbound;
+            private ByteBuffer[] gather;
+            private int gathered;
+            private boolean flushScheduled, flushing, flushWaiting;
+            private Throwable flushCause;
 
             public AioChannel(CoChannel coChan, AioGroup aioGroup, AsynchronousSocketChannel chan){
                 this.coChan = coChan;
                 this.aioGroup = aioGroup;
                 this.chan = chan;
+                this.ioTimer = new IoTimer(aioGroup, this);
+                this.idleTracker = aioGroup.trackIdle(this);
             }
 
             @Override
@@ -1570,7 +2878,7 @@ public class CoGroup {
             }
 
             @Override
-            public int read(Continuation co, ByteBuffer dst) throws IOException {
+            public int read(Continuation co, ByteBuffer dst, long timeoutMillis) throws IOException {
                 if(coChan != co.getContext()){
                     throw new IllegalArgumentException("Continuation context not this CoChannel");
                 }
@@ -1579,18 +2887,23 @@ public class CoGroup {
                 }
                 boolean failed = false;
                 try{
+                    result.begin();
                     chan.read(dst, null, handler);
                     aioGroup.incIoOps();
                     failed = true;
+                    ioPending = true;
+                    ioTimer.arm(timeoutMillis);
                     co.suspend();
                     failed = false;
                     aioGroup.decIoOps();
-                    if(result.cause != null){
-                        throw new IOException(result.cause);
+                    ioTimer.check("Read timed out");
+                    final int n = (int)result.take();
+                    if(n > 0 && idleTracker != null){
+                        idleTracker.read(aioGroup.currentTime);
                     }
-                    return result.bytes;
+                    return n;
                 } finally {
-                    result = null;
+                    ioTimer.disarm();
                     if(failed){
                         aioGroup.decIoOps();
                     }
@@ -1598,34 +2911,247 @@ public class CoGroup {
             }
 
             @Override
-            public int write(Continuation co, ByteBuffer src) throws IOException {
+            public int write(Continuation co, ByteBuffer src, long timeoutMillis) throws IOException {
                 if(coChan != co.getContext()){
                     throw new IllegalArgumentException("Continuation context not this CoChannel");
                 }
                 if(!src.hasRemaining()){
                     return 0;
                 }
+                awaitFlushed(co);
                 boolean failed = false;
+                writing = true;
                 try{
                     int n = 0;
+                    ioTimer.arm(timeoutMillis);
                     for(;src.hasRemaining();){
+                        result.begin();
                         chan.write(src, null, handler);
                         aioGroup.incIoOps();
                         failed = true;
+                        ioPending = true;
                         co.suspend();
                         failed = false;
                         aioGroup.decIoOps();
-                        if(result.cause != null){
-                            throw new IOException(result.cause);
+                        ioTimer.check("Write timed out");
+                        n += result.take();
+                        if(idleTracker != null){
+                            idleTracker.write(aioGroup.currentTime);
                         }
-                        n += result.bytes;
                     }
                     return n;
                 } finally {
-                    result = null;
+                    writing = false;
+                    ioTimer.disarm();
                     if(failed){
                         aioGroup.decIoOps();
                     }
+                    scheduleFlush();
+                }
+            }
+
+            @Override
+            public long read(Continuation co, ByteBuffer[] dsts, long timeoutMillis) throws IOException {
+                if(coChan != co.getContext()){
+                    throw new IllegalArgumentException("Continuation context not this CoChannel");
+                }
+                if(IoUtils.remaining(dsts) == 0L){
+                    return 0L;
+                }
+                boolean failed = false;
+                try{
+                    result.begin();
+                    chan.read(dsts, 0, dsts.length, 0L, TimeUnit.MILLISECONDS, null, vectorHandler);
+                    aioGroup.incIoOps();
+                    failed = true;
+                    ioPending = true;
+                    ioTimer.arm(timeoutMillis);
+                    co.suspend();
+                    failed = false;
+                    aioGroup.decIoOps();
+                    ioTimer.check("Read timed out");
+                    final long n = result.take();
+                    if(n > 0L && idleTracker != null){
+                        idleTracker.read(aioGroup.currentTime);
+                    }
+                    return n;
+                } finally {
+                    ioTimer.disarm();
+                    if(failed){
+                        aioGroup.decIoOps();
+                    }
+                }
+            }
+
+            @Override
+            public long write(Continuation co, ByteBuffer[] srcs, long timeoutMillis) throws IOException {
+                if(coChan != co.getContext()){
+                    throw new IllegalArgumentException("Continuation context not this CoChannel");
+                }
+                final long remaining = IoUtils.remaining(srcs);
+                if(remaining > 0L){
+                    awaitFlushed(co);
+                }
+                boolean failed = false;
+                writing = true;
+                try{
+                    long n = 0L;
+                    ioTimer.arm(timeoutMillis);
+                    for(;n < remaining;){
+                        result.begin();
+                        chan.write(srcs, 0, srcs.length, 0L, TimeUnit.MILLISECONDS, null, vectorHandler);
+                        aioGroup.incIoOps();
+                        failed = true;
+                        ioPending = true;
+                        co.suspend();
+                        failed = false;
+                        aioGroup.decIoOps();
+                        ioTimer.check("Write timed out");
+                        n += result.take();
+                        if(idleTracker != null){
+                            idleTracker.write(aioGroup.currentTime);
+                        }
+                    }
+                    return n;
+                } finally {
+                    writing = false;
+                    ioTimer.disarm();
+                    if(failed){
+                        aioGroup.decIoOps();
+                    }
+                    scheduleFlush();
+                }
+            }
+
+            @Override
+            public void writeLater(final ByteBuffer src){
+                if(!aioGroup.inGroup()){
+                    throw new IllegalStateException("writeLater() not in the event loop " + aioGroup.name);
+                }
+                if(!src.hasRemaining()){
+                    return;
+                }
+                if(outbound == null){
+                    outbound = new ArrayDeque<>();
+                    gather = new ByteBuffer[IoGroup.GATHER_SIZE];
+                }
+                outbound.offer(src);
+                scheduleFlush();
+            }
+
+            @Override
+            public long flush(Continuation co) throws IOException {
+                if(coChan != co.getContext()){
+                    throw new IllegalArgumentException("Continuation context not this CoChannel");
+                }
+                final long n = (outbound == null? 0L: IoUtils.remaining(outbound));
+                awaitFlushed(co);
+                return n;
+            }
+
+            /**
+             * No transferTo() to an asynchronous channel, so write the memory-mapped chunks of the file,
+             * each one in the time left of the timeout.
+             */
+            @Override
+            public long transferFrom(Continuation co, FileChannel src, long position, long count,
+                                     long timeoutMillis) throws IOException {
+                if(coChan != co.getContext()){
+                    throw new IllegalArgumentException("Continuation context not this CoChannel");
+                }
+                if(count <= 0L){
+                    return 0L;
+                }
+                final long end = Math.min(position + count, src.size());
+                final long deadline = (timeoutMillis > 0L? HashedTimingWheel.currentTime() + timeoutMillis: 0L);
+                long n = 0L;
+                for(;position + n < end;){
+                    long timeout = 0L;
+                    if(deadline != 0L && (timeout = deadline - HashedTimingWheel.currentTime()) <= 0L){
+                        IoUtils.close(chan);
+                        throw new SocketTimeoutException("Write timed out");
+                    }
+                    final long size = Math.min(end - position - n, TRANSFER_CHUNK_SIZE);
+                    final MappedByteBuffer chunk = src.map(FileChannel.MapMode.READ_ONLY, position + n, size);
+                    n += write(co, chunk, timeout);
+                }
+                return n;
+            }
+
+            @Override
+            public void flushNow(){
+                flushScheduled = false;
+                if(flushing || writing || !hasOutbound() || !chan.isOpen()){
+                    // The writer flushes after its write
+                    return;
+                }
+                startFlush();
+            }
+
+            final boolean hasOutbound(){
+                return (outbound != null && !outbound.isEmpty());
+            }
+
+            private void scheduleFlush(){
+                if(!flushScheduled && hasOutbound()){
+                    flushScheduled = true;
+                    aioGroup.flushLater(this);
+                }
+            }
+
+            private void awaitFlushed(Continuation co) throws IOException {
+                for(;flushing || hasOutbound();){
+                    if(!flushing){
+                        startFlush();
+                    }
+                    flushWaiting = true;
+                    co.suspend();
+                    flushWaiting = false;
+                    final Throwable cause = flushCause;
+                    if(cause != null){
+                        flushCause = null;
+                        throw new IOException(cause);
+                    }
+                }
+            }
+
+            private void startFlush(){
+                final ByteBuffer[] gather = this.gather;
+                int k = 0;
+                for(final ByteBuffer buffer: outbound){
+                    if(k == gather.length){
+                        break;
+                    }
+                    gather[k++] = buffer;
+                }
+                gathered = k;
+                flushing = true;
+                chan.write(gather, 0, k, 0L, TimeUnit.MILLISECONDS, null, flushHandler);
+                aioGroup.incIoOps();
+            }
+
+            final void flushed(final long bytes, final Throwable cause){
+                aioGroup.decIoOps();
+                flushing = false;
+                Arrays.fill(gather, 0, gathered, null);
+                if(cause != null){
+                    flushCause = cause;
+                    outbound.clear();
+                    IoUtils.close(chan);
+                }else{
+                    for(;!outbound.isEmpty() && !outbound.peek().hasRemaining();){
+                        outbound.poll();
+                    }
+                    if(bytes > 0L && idleTracker != null){
+                        idleTracker.write(aioGroup.currentTime);
+                    }
+                    if(!outbound.isEmpty()){
+                        startFlush();
+                        return;
+                    }
+                }
+                if(flushWaiting){
+                    coRunner().resume();
                 }
             }
 
@@ -1634,9 +3160,39 @@ public class CoGroup {
                 return chan.isOpen();
             }
 
+            /**
+             * @return true if the io threads may be still using the buffers of a read or write,
+             * or the outbound buffers
+             */
+            final boolean isIoPending(){
+                return (result.state == IoResult.PENDING || flushing);
+            }
+
+            // Release the channel buffers deferred by close() until the pending operation completed
+            final void releaseBuffers(){
+                final CoChannel coChan = this.coChan;
+                if(coChan instanceof PushCoChannel){
+                    ((PushCoChannel)coChan).releaseBuffers();
+                }else{
+                    ((PullCoChannel)coChan).releaseBuffers();
+                }
+            }
+
+            /**
+             * The pending operation can't be cancelled in aio, so close the channel and drop
+             * the late completion.
+             */
+            @Override
+            public void expire(){
+                ioPending = false;
+                IoUtils.close(chan);
+                coRunner().resume();
+            }
+
             @Override
             public void close() {
                 IoUtils.close(chan);
+                aioGroup.untrackIdle(idleTracker);
                 if(log.isDebugEnabled()){
                     final CoGroup group = aioGroup.coGroup;
                     log.debug("{}: {} closed", group.name, coRunner().name);
@@ -1647,40 +3203,114 @@ public class CoGroup {
             class IoHandler implements CompletionHandler<Integer, Void> {
 
                 @Override
-                public void completed(Integer result, Void attachment) {
-                    aioGroup.offer(new IoResultHandler(result));
+                public void completed(Integer bytes, Void attachment) {
+                    result.complete(bytes, null);
                 }
 
                 @Override
                 public void failed(Throwable cause, Void attachment) {
-                    aioGroup.offer(new IoResultHandler(cause));
+                    result.complete(0L, cause);
                 }
             }// IoHandler
 
-            class IoResultHandler implements CoTask {
+            // Scattering reads and gathering writes
+            class VectorIoHandler implements CompletionHandler<Long, Void> {
+
+                @Override
+                public void completed(Long bytes, Void attachment) {
+                    result.complete(bytes, null);
+                }
 
-                final Integer bytes;
-                final Throwable cause;
+                @Override
+                public void failed(Throwable cause, Void attachment) {
+                    result.complete(0L, cause);
+                }
+            }// VectorIoHandler
+
+            // Only one flush in flight, so the handler is also the completion task
+            class FlushHandler implements CompletionHandler<Long, Void>, CoTask {
+                private long bytes;
+                private Throwable cause;
+
+                @Override
+                public void completed(Long bytes, Void attachment) {
+                    this.bytes = bytes;
+                    this.cause = null;
+                    aioGroup.put(this);
+                }
 
-                IoResultHandler(Integer bytes){
-                    this(bytes, null);
+                @Override
+                public void failed(Throwable cause, Void attachment) {
+                    this.bytes = 0L;
+                    this.cause = cause;
+                    aioGroup.put(this);
                 }
 
-                IoResultHandler(Throwable cause){
-                    this(null, cause);
+                @Override
+                public void run() {
+                    final Throwable cause = this.cause;
+                    this.cause = null;
+                    flushed(bytes, cause);
+                    if(!chan.isOpen()){
+                        releaseBuffers();
+                    }
+                }
+            }// FlushHandler
+
+            /**
+             * <p>
+             *  The result slot reused by all reads and writes of this channel. The state flips
+             *  IDLE -> PENDING when the loop issues an operation, PENDING -> DONE when the io thread
+             *  completes it, and back to IDLE when the loop takes the result. A late completion of an
+             *  expired operation returns the slot to IDLE, and the channel has been closed meanwhile.
+             * </p>
+             */
+            class IoResult implements CoTask {
+                static final int IDLE = 0, PENDING = 1, DONE = 2;
+
+                private volatile int state;
+                private long bytes;
+                private Throwable cause;
+
+                final void begin() throws IOException {
+                    if(state != IDLE){
+                        // The completion of an expired operation hasn't arrived
+                        throw new ClosedChannelException();
+                    }
+                    state = PENDING;
                 }
 
-                IoResultHandler(Integer bytes, Throwable cause){
+                // Running in io threads.
+                final void complete(long bytes, Throwable cause){
                     this.bytes = bytes;
                     this.cause = cause;
+                    state = DONE;
+                    aioGroup.put(this);
+                }
+
+                final long take() throws IOException {
+                    final Throwable cause = this.cause;
+                    this.cause = null;
+                    state = IDLE;
+                    if(cause != null){
+                        throw new IOException(cause);
+                    }
+                    return bytes;
                 }
 
                 @Override
                 public void run() {
-                    result = this;
+                    if(!ioPending){
+                        // Timed out
+                        cause = null;
+                        state = IDLE;
+                        releaseBuffers();
+                        return;
+                    }
+                    ioPending = false;
                     coRunner().resume();
                 }
-            }// IoResultHandler
+            }// IoResult
 
         }// AioCoChannel
 
@@ -1710,14 +3340,180 @@ public class CoGroup {
         return backlog;
     }
 
+    public boolean isReusePort(){
+        return reusePort;
+    }
+
+    public int getAcceptBatchSize(){
+        return acceptBatchSize;
+    }
+
+    public int getCoQueueCapacity(){
+        return coQueueCapacity;
+    }
+
+    public OverflowPolicy getOverflowPolicy(){
+        return overflowPolicy;
+    }
+
+    public long getTimerTick(){
+        return timerTick;
+    }
+
+    public int getIoRatio(){
+        return ioRatio;
+    }
+
+    public int getMaxTasksPerLoop(){
+        return maxTasksPerLoop;
+    }
+
+    public boolean isStickyRead(){
+        return stickyRead;
+    }
+
+    public int getMaxPipelinedRequests(){
+        return maxPipelinedRequests;
+    }
+
+    public long getReaderIdleTime(){
+        return readerIdleTime;
+    }
+
+    public long getWriterIdleTime(){
+        return writerIdleTime;
+    }
+
+    public long getAllIdleTime(){
+        return allIdleTime;
+    }
+
+    /**
+     * @return the sweep interval of idle channels, or 0 if no idle checking
+     */
+    final long idleCheckInterval(){
+        return idleCheckInterval;
+    }
+
+    /**
+     * <p>
+     *  The count of tasks rejected in REJECT overflow policy.
+     * </p>
+     * @return the rejected tasks of all event loops
+     */
+    public long getRejectedTasks(){
+        long count = 0L;
+        final IoGroup[] groups = ioGroups;
+        if(groups != null){
+            for(final IoGroup group: groups){
+                count += group.rejectedTasks();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * <p>
+     *  The count of selector wakeups avoided by wakeup coalescing in nio mode.
+     * </p>
+     * @return the wakeups avoided of all event loops
+     */
+    public long getWakeupsAvoided(){
+        long count = 0L;
+        final IoGroup[] groups = ioGroups;
+        if(groups != null){
+            for(final IoGroup group: groups){
+                if(group instanceof NioGroup){
+                    count += ((NioGroup)group).wakeupsAvoided();
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * <p>
+     *  The count of channels that have been accepted in nio mode.
+     * </p>
+     * @return the accept count of all event loops
+     */
+    public long getAcceptCount(){
+        long count = 0L;
+        final IoGroup[] groups = ioGroups;
+        if(groups != null){
+            for(final IoGroup group: groups){
+                if(group instanceof NioGroup){
+                    count += ((NioGroup)group).acceptCount();
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * <p>
+     *  The time spent in the accept path, from configuring the accepted channel
+     *  to the first resume of its coroutine, in nio mode.
+     * </p>
+     * @return the accept nanos of all event loops
+     */
+    public long getAcceptNanos(){
+        long nanos = 0L;
+        final IoGroup[] groups = ioGroups;
+        if(groups != null){
+            for(final IoGroup group: groups){
+                if(group instanceof NioGroup){
+                    nanos += ((NioGroup)group).acceptNanos();
+                }
+            }
+        }
+        return nanos;
+    }
+
+    /**
+     * <p>
+     *  The max count of channels accepted in one wakeup in nio mode, that is at most
+     *  the accept batch size.
+     * </p>
+     * @return the max accept batch of all event loops
+     */
+    public int getMaxAcceptBatch(){
+        int max = 0;
+        final IoGroup[] groups = ioGroups;
+        if(groups != null){
+            for(final IoGroup group: groups){
+                if(group instanceof NioGroup){
+                    max = Math.max(max, ((NioGroup)group).maxAcceptBatch());
+                }
+            }
+        }
+        return max;
+    }
+
     public int getBufferSize(){
         return bufferSize;
     }
 
+    public BufferAllocator getBufferAllocator(){
+        return bufferAllocator;
+    }
+
+    public boolean isReleaseIdleBuffers(){
+        return releaseIdleBuffers;
+    }
+
     public int getWorkerThreads(){
         return workerThreads;
     }
 
+    public int getIoThreads(){
+        return ioThreads;
+    }
+
+    public int getAioThreads(){
+        return aioThreads;
+    }
+
     public final static Builder newBuilder(){
         return new Builder();
     }
@@ -1763,16 +3559,191 @@ public class CoGroup {
             return this;
         }
 
+        /**
+         * <p>
+         *  Each event loop binds its own listener with SO_REUSEPORT, so that the kernel
+         *  spreads incoming connections across loops.
+         * </p>
+         * @param reusePort reuse port mode or not
+         * @return this builder
+         */
+        public Builder setReusePort(boolean reusePort){
+            group.reusePort = reusePort;
+            return this;
+        }
+
+        /**
+         * <p>
+         *  Max channels accepted in one OP_ACCEPT readiness.
+         * </p>
+         * @param acceptBatchSize the accept batch size
+         * @return this builder
+         */
+        public Builder setAcceptBatchSize(int acceptBatchSize){
+            group.acceptBatchSize = acceptBatchSize;
+            return this;
+        }
+
         public Builder setBufferSize(int bufferSize){
             group.bufferSize = bufferSize;
             return this;
         }
 
+        /**
+         * <p>
+         *  The allocator of channel buffers, heap buffers by default. A {@link PooledBufferAllocator}
+         *  saves the copy through temporary direct buffers in socket reads and writes.
+         * </p>
+         * @param bufferAllocator the buffer allocator
+         * @return this builder
+         */
+        public Builder setBufferAllocator(BufferAllocator bufferAllocator){
+            group.bufferAllocator = bufferAllocator;
+            return this;
+        }
+
+        /**
+         * <p>
+         *  Release the cleared inBuffer and outBuffer of a channel while it waits in
+         *  {@link CoChannel#readInBuffer(Continuation)}, so that the buffer memory scales with
+         *  active channels. Works in nio mode, and better with a pooled buffer allocator.
+         * </p>
+         * @param releaseIdleBuffers release idle buffers or not
+         * @return this builder
+         */
+        public Builder setReleaseIdleBuffers(boolean releaseIdleBuffers){
+            group.releaseIdleBuffers = releaseIdleBuffers;
+            return this;
+        }
+
         public Builder setWorkerThreads(int workerThreads){
             group.workerThreads = workerThreads;
             return this;
         }
 
+        public Builder setIoThreads(int ioThreads){
+            group.ioThreads = ioThreads;
+            return this;
+        }
+
+        /**
+         * <p>
+         *  The completion threads of the channel group in each aio event loop. Completions are
+         *  handed over to the coQueue of the loop that owns the channel.
+         * </p>
+         * @param aioThreads the aio completion threads
+         * @return this builder
+         */
+        public Builder setAioThreads(int aioThreads){
+            group.aioThreads = aioThreads;
+            return this;
+        }
+
+        /**
+         * <p>
+         *  The capacity of the coQueue that receives tasks from other threads in each event loop.
+         * </p>
+         * @param coQueueCapacity the coQueue capacity
+         * @return this builder
+         */
+        public Builder setCoQueueCapacity(int coQueueCapacity){
+            group.coQueueCapacity = coQueueCapacity;
+            return this;
+        }
+
+        public Builder setOverflowPolicy(OverflowPolicy overflowPolicy){
+            group.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        /**
+         * <p>
+         *  The percentage of event loop time for I/O in nio mode, and tasks run in the rest time
+         *  that is relative to the I/O time of the last loop. 100 means that tasks run
+         *  without time limit.
+         * </p>
+         * @param ioRatio the I/O ratio in [1, 100]
+         * @return this builder
+         */
+        public Builder setIoRatio(int ioRatio){
+            group.ioRatio = ioRatio;
+            return this;
+        }
+
+        /**
+         * <p>
+         *  The tick duration(ms) of the timing wheel in each event loop.
+         * </p>
+         * @param timerTick the timer tick
+         * @return this builder
+         */
+        public Builder setTimerTick(long timerTick){
+            group.timerTick = timerTick;
+            return this;
+        }
+
+        /**
+         * <p>
+         *  Max tasks run in one event loop in nio mode.
+         * </p>
+         * @param maxTasksPerLoop max tasks per loop
+         * @return this builder
+         */
+        public Builder setMaxTasksPerLoop(int maxTasksPerLoop){
+            group.maxTasksPerLoop = maxTasksPerLoop;
+            return this;
+        }
+
+        /**
+         * <p>
+         *  Keep OP_READ registered after a read in nio mode, so that a handler looping on read
+         *  doesn't change interestOps per message. It's cleared by {@link CoChannel#pauseRead()}
+         *  or when the channel is readable but the coroutine doesn't wait for read.
+         * </p>
+         * @param stickyRead sticky read or not
+         * @return this builder
+         */
+        public Builder setStickyRead(boolean stickyRead){
+            group.stickyRead = stickyRead;
+            return this;
+        }
+
+        /**
+         * <p>
+         *  Max pipelined requests in flight on a pull channel. When reached, the channel receives
+         *  responses before sending the next request.
+         * </p>
+         * @param maxPipelinedRequests max pipelined requests
+         * @return this builder
+         */
+        public Builder setMaxPipelinedRequests(int maxPipelinedRequests){
+            group.maxPipelinedRequests = maxPipelinedRequests;
+            return this;
+        }
+
+        /**
+         * <p>
+         *  Fire READER_IDLE to the handler of a push channel when no read in this time(ms),
+         *  0 means disabled.
+         * </p>
+         * @param readerIdleTime reader idle time
+         * @return this builder
+         */
+        public Builder setReaderIdleTime(long readerIdleTime){
+            group.readerIdleTime = readerIdleTime;
+            return this;
+        }
+
+        public Builder setWriterIdleTime(long writerIdleTime){
+            group.writerIdleTime = writerIdleTime;
+            return this;
+        }
+
+        public Builder setAllIdleTime(long allIdleTime){
+            group.allIdleTime = allIdleTime;
+            return this;
+        }
+
         public Builder channelInitializer(ChannelInitializer initializer){
             group.initializer = initializer;
             return this;
@@ -1808,6 +3779,40 @@ public class CoGroup {
             return this;
         }
 
+        /**
+         * <p>
+         *  Reuse the most recently released pull channel first, so that a small hot set of channels
+         *  serves light traffic, and the rest can be evicted by maxIdleTime.
+         * </p>
+         * @param lifo LIFO reuse or FIFO reuse
+         * @return this builder
+         */
+        public Builder setPullChannelPoolLifo(boolean lifo){
+            enablePullChannelPool();
+            pullChannelPoolBuilder.setLifo(lifo);
+            return this;
+        }
+
+        public Builder setPullChannelPoolMinIdle(int minIdle){
+            enablePullChannelPool();
+            pullChannelPoolBuilder.setMinIdle(minIdle);
+            return this;
+        }
+
+        /**
+         * <p>
+         *  Close the free pull channels of an address that are idle for this time(ms), but keep
+         *  minIdle ones. No eviction when the max idle time is 0.
+         * </p>
+         * @param maxIdleTime the max idle time
+         * @return this builder
+         */
+        public Builder setPullChannelPoolMaxIdleTime(long maxIdleTime){
+            enablePullChannelPool();
+            pullChannelPoolBuilder.setMaxIdleTime(maxIdleTime);
+            return this;
+        }
+
         public Builder enablePullChannelPool(){
             initPullChannelPoolBuilder();
             return this;
@@ -1833,10 +3838,65 @@ public class CoGroup {
                 throw new IllegalArgumentException("bufferSize smaller than 1: " + bufferSize);
             }
 
-            if(pullChannelPoolBuilder != null) {
-                group.pullChannelPool = pullChannelPoolBuilder.build();
+            final int ioThreads = group.getIoThreads();
+            if(ioThreads < 1){
+                throw new IllegalArgumentException("ioThreads smaller than 1: " + ioThreads);
+            }
+            final int aioThreads = group.getAioThreads();
+            if(aioThreads < 1){
+                throw new IllegalArgumentException("aioThreads smaller than 1: " + aioThreads);
+            }
+            final int acceptBatchSize = group.getAcceptBatchSize();
+            if(acceptBatchSize < 1){
+                throw new IllegalArgumentException("acceptBatchSize smaller than 1: " + acceptBatchSize);
+            }
+            final int coQueueCapacity = group.getCoQueueCapacity();
+            if(coQueueCapacity < 1){
+                throw new IllegalArgumentException("coQueueCapacity smaller than 1: " + coQueueCapacity);
+            }
+            final int ioRatio = group.getIoRatio();
+            if(ioRatio < 1 || ioRatio > 100){
+                throw new IllegalArgumentException("ioRatio not in [1, 100]: " + ioRatio);
+            }
+            final int maxTasksPerLoop = group.getMaxTasksPerLoop();
+            if(maxTasksPerLoop < 1){
+                throw new IllegalArgumentException("maxTasksPerLoop smaller than 1: " + maxTasksPerLoop);
+            }
+            final int maxPipelinedRequests = group.getMaxPipelinedRequests();
+            if(maxPipelinedRequests < 1){
+                throw new IllegalArgumentException("maxPipelinedRequests smaller than 1: " + maxPipelinedRequests);
+            }
+            final long timerTick = group.getTimerTick();
+            if(timerTick < 1L){
+                throw new IllegalArgumentException("timerTick smaller than 1: " + timerTick);
+            }
+            if(group.getReaderIdleTime() < 0L || group.getWriterIdleTime() < 0L || group.getAllIdleTime() < 0L){
+                throw new IllegalArgumentException("Idle time negative");
+            }
+            // Sweep idle channels in a quarter of the min idle time
+            long minIdleTime = Long.MAX_VALUE;
+            if(group.readerIdleTime > 0L){
+                minIdleTime = group.readerIdleTime;
+            }
+            if(group.writerIdleTime > 0L){
+                minIdleTime = Math.min(minIdleTime, group.writerIdleTime);
+            }
+            if(group.allIdleTime > 0L){
+                minIdleTime = Math.min(minIdleTime, group.allIdleTime);
+            }
+            if(minIdleTime != Long.MAX_VALUE){
+                group.idleCheckInterval = Math.max(minIdleTime >> 2, timerTick);
+            }
+            if(group.getOverflowPolicy() == null){
+                throw new IllegalStateException("Overflow policy not set");
+            }
+            if(group.getBufferAllocator() == null){
+                throw new IllegalStateException("Buffer allocator not set");
             }
 
+            // Each event loop builds its own pull channel pool when it boots
+            group.pullChannelPoolBuilder = pullChannelPoolBuilder;
+
             log.info("{}: Create the worker thread pool(workerThreads {})",  group.name, workerThreads);
             group.workerThreadPool = Executors.newScheduledThreadPool(workerThreads, new ThreadFactory() {
                 final AtomicInteger counter = new AtomicInteger(0);
@@ -1849,26 +3909,26 @@ public class CoGroup {
                 }
             });
 
-            boolean failed = true;
-            try{
-                log.info("{}: Create the timer service", group.name);
-                group.timerService = Executors.newSingleThreadScheduledExecutor((r) -> {
-                    final Thread t = new Thread(r,  group.name+"-timer");
-                    t.setDaemon(group.isDaemon());
-                    return t;
-                });
-                failed = false;
-            }finally {
-                if(failed){
-                    group.workerThreadPool.shutdown();
-                }
-            }
-
             return group;
         }
 
     }// Builder
 
+    /**
+     * <p>
+     *  The policy when the coQueue of an event loop is full.
+     * </p>
+     */
+    public enum OverflowPolicy {
+        /** The producer waits for a free slot, but an event loop producer is rejected. */
+        BLOCK,
+        /**
+         * execute() fails with RejectedExecutionException, and other producers are rejected,
+         * but completions of admitted work still wait so that no coroutine is lost.
+         */
+        REJECT
+    }
+
     static class ConnectRequest {
         final InetSocketAddress remote;
         final CoHandler handler;
@@ -17,6 +17,7 @@
 package io.conio;
 
 import com.offbynull.coroutines.user.Continuation;
+import io.conio.util.IoUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,4 +37,17 @@ public interface CoHandler {
         log.warn("uncaught exception", cause);
     }
 
+    /**
+     * <p>
+     *  Fired by the event loop when the push channel has been idle for the idle time set
+     *  in CoGroup.Builder. It closes the channel by default.
+     * </p>
+     * @param channel the idle channel
+     * @param state the idle state
+     */
+    default void idle(CoChannel channel, IdleState state){
+        log.debug("{}: {}, so close it", channel.name(), state);
+        IoUtils.close(channel);
+    }
+
 }
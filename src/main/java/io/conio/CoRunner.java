@@ -22,6 +22,11 @@ import com.offbynull.coroutines.user.CoroutineRunner;
 import io.conio.util.CoFuture;
 import io.conio.util.ScheduledCoFuture;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
 import java.util.concurrent.Callable;
 
 /**
@@ -115,6 +120,59 @@ public abstract class CoRunner implements Coroutine {
         return group.schedule(handler, initialDelay, period);
     }
 
+    /**
+     * <p>
+     *     Read a sequence of bytes from the file into the buffer, starting at the given file position.
+     *     The current coroutine suspends until the completion is posted back to its event loop, so
+     *     disk I/O neither blocks the loop nor uses the worker thread pool.
+     * </p>
+     *
+     * @param co the current continuation
+     * @param file the asynchronous file channel
+     * @param dst the buffer into which bytes are transferred
+     * @param position the file position at which the transfer begins
+     * @return the number of bytes read, possibly zero, or -1 if the position is at the end of file
+     * @throws IOException if an I/O error occurs
+     */
+    public int readFile(Continuation co, AsynchronousFileChannel file, ByteBuffer dst, long position)
+            throws IOException {
+        return group.readFile(co, file, dst, position);
+    }
+
+    /**
+     * <p>
+     *     Write all remaining bytes of the buffer into the file, starting at the given file position.
+     *     The current coroutine suspends until each completion is posted back to its event loop.
+     * </p>
+     *
+     * @param co the current continuation
+     * @param file the asynchronous file channel
+     * @param src the buffer from which bytes are transferred
+     * @param position the file position at which the transfer begins
+     * @return the number of bytes written
+     * @throws IOException if an I/O error occurs
+     */
+    public int writeFile(Continuation co, AsynchronousFileChannel file, ByteBuffer src, long position)
+            throws IOException {
+        return group.writeFile(co, file, src, position);
+    }
+
+    /**
+     * <p>
+     *     Map a region of the file into memory read-only, for large sequential reads. The mapped buffer
+     *     can be written into a channel directly, so the file content isn't copied into the heap.
+     * </p>
+     *
+     * @param file the file channel
+     * @param position the position within the file at which the mapped region starts
+     * @param size the size of the region to be mapped
+     * @return the mapped byte buffer
+     * @throws IOException if an I/O error occurs
+     */
+    public MappedByteBuffer mapFile(FileChannel file, long position, long size) throws IOException {
+        return file.map(FileChannel.MapMode.READ_ONLY, position, size);
+    }
+
     public CoGroup group(){
         return group;
     }
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2018, little-pan, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package io.conio;
+
+import com.offbynull.coroutines.user.Continuation;
+import io.conio.util.CoCallable;
+import io.conio.util.CoFuture;
+import io.conio.util.IoUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * <p>
+ * The multiplexed request/response channel over a pull channel, shared by many coroutines
+ * in the event loop of the channel. Each message is framed by StreamId(4), Length(4) and the payload.
+ * Requests are sent by writeLater() and flushed in the event loop, and the demultiplexer reads
+ * response frames in the channel coroutine, then completes the future of the matching stream.
+ * The peer must send back each response with the stream id of its request, in any order.
+ * The pull channel is dedicated to this channel, since the demultiplexer occupies its coroutine.
+ * </p>
+ */
+public class MuxCoChannel implements Closeable {
+    final static Logger log = LoggerFactory.getLogger(MuxCoChannel.class);
+
+    public final static int HEADER_SIZE = 8;
+    public final static int MAX_FRAME_SIZE = 16 << 20;
+
+    final PullCoChannel chan;
+    private final Map<Integer, CoGroup.CoFutureImpl<ByteBuffer>> streams = new HashMap<>();
+    private int nextStreamId;
+    private boolean closed;
+
+    public MuxCoChannel(PullCoChannel chan){
+        this.chan = chan;
+        chan.execute(new Demuxer());
+    }
+
+    /**
+     * <p>
+     * Send a request message in a new stream. The message is owned by this channel until the response
+     * future completes.
+     * </p>
+     * @param co the continuation of the requester in the event loop of this channel
+     * @param message the request message
+     * @return the future of the response message
+     * @throws IOException if this channel closed
+     */
+    public CoFuture<ByteBuffer> request(Continuation co, ByteBuffer message) throws IOException {
+        if(closed){
+            throw new ClosedChannelException();
+        }
+        final int length = message.remaining();
+        if(length > MAX_FRAME_SIZE){
+            throw new IOException("Message too large: " + length);
+        }
+        int streamId = nextStreamId++;
+        for(;streams.containsKey(streamId);){
+            streamId = nextStreamId++;
+        }
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(streamId).putInt(length).flip();
+        chan.writeLater(header);
+        chan.writeLater(message);
+
+        final CoGroup.CoFutureImpl<ByteBuffer> future = new CoGroup.CoFutureImpl<>((CoRunner)co.getContext());
+        streams.put(streamId, future);
+        return future;
+    }
+
+    /**
+     * <p>
+     * Send a request message, then wait for its response.
+     * </p>
+     * @param co the continuation of the requester in the event loop of this channel
+     * @param message the request message
+     * @return the response message
+     * @throws IOException if this channel closed or the response failed
+     */
+    public ByteBuffer call(Continuation co, ByteBuffer message) throws IOException {
+        final CoFuture<ByteBuffer> future = request(co, message);
+        try{
+            return future.get(co);
+        }catch(final ExecutionException e){
+            final Throwable cause = e.getCause();
+            if(cause instanceof IOException){
+                throw (IOException)cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    public int streams(){
+        return streams.size();
+    }
+
+    public boolean isOpen(){
+        return (!closed && chan.isOpen());
+    }
+
+    @Override
+    public void close(){
+        if(closed){
+            return;
+        }
+        fail(new ClosedChannelException());
+        closeChannel();
+    }
+
+    private void closeChannel(){
+        // The socket has a pending read of the demultiplexer, so don't release it into a pool
+        final PullCoRunner wrapped = chan.wrapped;
+        if(wrapped instanceof CoChannel){
+            IoUtils.close((CoChannel)wrapped);
+        }
+        IoUtils.close(chan);
+    }
+
+    private void complete(int streamId, ByteBuffer message){
+        final CoGroup.CoFutureImpl<ByteBuffer> future = streams.remove(streamId);
+        if(future == null){
+            log.warn("{}: No stream {} for the response, drop it", chan.name, streamId);
+            return;
+        }
+        future.setValue(message);
+        future.run();
+    }
+
+    private void fail(Throwable cause){
+        closed = true;
+        final List<CoGroup.CoFutureImpl<ByteBuffer>> futures = new ArrayList<>(streams.values());
+        streams.clear();
+        for(final CoGroup.CoFutureImpl<ByteBuffer> future: futures){
+            future.setCause(cause);
+            future.run();
+        }
+    }
+
+    /**
+     * The response reader that runs in the channel coroutine until the channel closed.
+     */
+    class Demuxer implements CoCallable<Void> {
+
+        @Override
+        public Void call(Continuation co) {
+            final CoChannel ch = (CoChannel)co.getContext();
+            final ByteBuffer in = ByteBuffer.allocate(Math.max(ch.group().getBufferSize(), HEADER_SIZE));
+            in.flip();
+            try{
+                for(;!closed;){
+                    fill(co, ch, in, HEADER_SIZE);
+                    final int streamId = in.getInt();
+                    final int length = in.getInt();
+                    if(length < 0 || length > MAX_FRAME_SIZE){
+                        throw new IOException("Frame length illegal: " + length);
+                    }
+                    final ByteBuffer message = ByteBuffer.allocate(length);
+                    final int n = Math.min(in.remaining(), length);
+                    final int limit = in.limit();
+                    in.limit(in.position() + n);
+                    message.put(in);
+                    in.limit(limit);
+                    // Read the rest of a large message into itself
+                    for(;message.hasRemaining();){
+                        if(ch.read(co, message) == -1){
+                            throw new EOFException("Peer closed");
+                        }
+                    }
+                    message.flip();
+                    complete(streamId, message);
+                }
+            }catch(final IOException e){
+                if(!closed){
+                    log.debug(chan.name + ": demultiplexer error", e);
+                    fail(e);
+                    closeChannel();
+                }
+            }
+            return null;
+        }
+
+        private void fill(Continuation co, CoChannel ch, ByteBuffer in, int n) throws IOException {
+            for(;in.remaining() < n;){
+                in.compact();
+                final int i = ch.read(co, in);
+                in.flip();
+                if(i == -1){
+                    throw new EOFException("Peer closed");
+                }
+            }
+        }
+    }// Demuxer
+
+}
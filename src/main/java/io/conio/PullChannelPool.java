@@ -18,6 +18,7 @@ package io.conio;
 
 import com.offbynull.coroutines.user.Continuation;
 import io.conio.util.CoFuture;
+import io.conio.util.HashedTimingWheel;
 import io.conio.util.IoUtils;
 import io.conio.util.RtUtils;
 import io.conio.util.ScheduledCoFuture;
@@ -28,8 +29,13 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * <p>
@@ -45,7 +51,14 @@ public class PullChannelPool implements CoHandler, Closeable {
     private int maxSize = (RtUtils.PROCESSORS << 2) + 1;
     private long maxWait = 30000L;         // ms
     private long heartbeatInterval = 30L;  // unit s, no heartbeat when this value < 1
+    // Reuse the most recently released channel first, otherwise the least recently released
+    private boolean lifo;
+    // Free channels idle for maxIdleTime(ms) are closed beyond minIdle ones, no eviction when maxIdleTime < 1
+    private int minIdle;
+    private long maxIdleTime;
     private boolean closed;
+    // Waits for a free channel that exceeded maxWait
+    private final LongAdder expiredWaits = new LongAdder();
 
     // Heartbeat properties
     private ScheduledCoFuture<?> heartbeatFuture;
@@ -72,6 +85,28 @@ public class PullChannelPool implements CoHandler, Closeable {
         return maxWait;
     }
 
+    /**
+     * <p>
+     *     The count of getChannel() waits that exceeded maxWait and failed with a TimeoutException.
+     * </p>
+     * @return the expired waits
+     */
+    public long getExpiredWaits(){
+        return expiredWaits.sum();
+    }
+
+    public boolean isLifo(){
+        return lifo;
+    }
+
+    public int getMinIdle(){
+        return minIdle;
+    }
+
+    public long getMaxIdleTime(){
+        return maxIdleTime;
+    }
+
     public long getHeartbeatInterval(){
         return heartbeatInterval;
     }
@@ -104,6 +139,62 @@ public class PullChannelPool implements CoHandler, Closeable {
         return getChannel(co, sa, PriorityKey.SINGLE);
     }
 
+    /**
+     * <p>
+     *     Get a channel of one backend chosen from the addresses by power of two choices: pick two
+     *     addresses at random, then take the one of lower cost in the balance policy. A backend that
+     *     has no latency sample yet is assumed as slow as the mean of the others, so that a new or
+     *     recovering backend isn't flooded before its first response.
+     * </p>
+     * @param co the continuation
+     * @param addresses the backend addresses
+     * @param policy the balance policy
+     * @return the channel future
+     */
+    public CoFuture<PullCoChannel> getChannel(Continuation co, List<InetSocketAddress> addresses,
+                                              BalancePolicy policy){
+        final int n = addresses.size();
+        if(n == 0){
+            throw new IllegalArgumentException("No backend address");
+        }
+        InetSocketAddress sa = addresses.get(0);
+        if(n > 1){
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            final int a = random.nextInt(n);
+            int b = random.nextInt(n - 1);
+            if(b >= a){
+                ++b;
+            }
+            final InetSocketAddress sb = addresses.get(b);
+            sa = addresses.get(a);
+            final SaPool pa = saPools.get(sa), pb = saPools.get(sb);
+            double defaultLatency = 0.0;
+            if(policy == BalancePolicy.EWMA_LATENCY && (!SaPool.hasLatency(pa) || !SaPool.hasLatency(pb))){
+                defaultLatency = meanLatency();
+            }
+            if(SaPool.cost(pb, policy, defaultLatency) < SaPool.cost(pa, policy, defaultLatency)){
+                sa = sb;
+            }
+        }
+        return getChannel(co, sa, PriorityKey.SINGLE);
+    }
+
+    /**
+     * @return the mean latency EWMA of the backends that have samples, or 1.0 if none, so that
+     * the cost goes by the outstanding requests
+     */
+    private double meanLatency(){
+        double sum = 0.0;
+        int n = 0;
+        for(final SaPool saPool: saPools.values()){
+            if(SaPool.hasLatency(saPool)){
+                sum += saPool.latencyEwma;
+                ++n;
+            }
+        }
+        return (n == 0? 1.0: sum / n);
+    }
+
     /**
      * <p>
      *    Heartbeat entrance.
@@ -166,8 +257,11 @@ public class PullChannelPool implements CoHandler, Closeable {
                         failed = false;
                         break;
                     }
+                    final long accessTime = pooled.lastAccessTime;
                     final CoFuture<ByteBuffer> f = doHeartbeat(pooled);
                     f.get(co);
+                    pooled.lastAccessTime = accessTime;
+                    pooled.beating = true;
                     pooled.close(); // Release it after test
                     failed = false;
                 }catch (final ExecutionException e){
@@ -207,6 +301,24 @@ public class PullChannelPool implements CoHandler, Closeable {
         });
     }
 
+    /**
+     * <p>
+     *    Idle eviction entrance, called by the event loop timer.
+     * </p>
+     * @return the evicted channels
+     */
+    final int evictIdle(){
+        if(!isOpen()){
+            return 0;
+        }
+        final long currentTime = System.currentTimeMillis();
+        int evicted = 0;
+        for(final SaPool saPool: saPools.values()){
+            evicted += saPool.evictIdle(currentTime);
+        }
+        return evicted;
+    }
+
     final void setHeartbeatFuture(ScheduledCoFuture<?> heartbeatFuture){
         this.heartbeatFuture = heartbeatFuture;
     }
@@ -238,11 +350,17 @@ public class PullChannelPool implements CoHandler, Closeable {
         final static Logger log = LoggerFactory.getLogger(SaPool.class);
 
         private final PullChannelPool parentPool;
-        private final InetSocketAddress address;
+        final InetSocketAddress address;
 
-        private Map<PriorityKey, Queue<PooledChannel>> pool = new HashMap<>();
+        private Map<PriorityKey, Deque<PooledChannel>> pool = new HashMap<>();
         private int poolSize;
-        private Queue<CoRunner> waiters = new LinkedList<>();
+        // Coroutines waiting for a free channel in FIFO order, each one until its maxWait deadline
+        private Waiter waiterHead, waiterTail;
+        private int waiting;
+        // The EWMA of the response latency(ns) of requests on the channels, from the first bytes of
+        // a request written to the first bytes of its response read
+        final static double LATENCY_EWMA_ALPHA = 0.2;
+        private double latencyEwma;
 
         public SaPool(PullChannelPool parentPool, InetSocketAddress address){
             this.parentPool = parentPool;
@@ -250,9 +368,9 @@ public class PullChannelPool implements CoHandler, Closeable {
         }
 
         public CoFuture<PullCoChannel> getChannel(Continuation co, PriorityKey priorityKey){
-            Queue<PooledChannel> queue = pool.get(priorityKey);
+            Deque<PooledChannel> queue = pool.get(priorityKey);
             if(queue == null){
-                queue = new LinkedList<>();
+                queue = new ArrayDeque<>();
                 pool.put(priorityKey, queue);
             }
 
@@ -260,42 +378,69 @@ public class PullChannelPool implements CoHandler, Closeable {
             if(waiter == null){
                 throw new IllegalArgumentException("No continuation context");
             }
-            for(;;){
-                if(!parentPool.isOpen()){
-                    throw new IllegalStateException(parentPool.name+" closed");
-                }
-                final PooledChannel chan = queue.poll();
-                if(chan != null){
-                    return newCoFuture(waiter, chan);
-                }
+            Waiter w = null;
+            try {
+                for(;;){
+                    if(!parentPool.isOpen()){
+                        if(w == null){
+                            throw new IllegalStateException(parentPool.name+" closed");
+                        }
+                        // Resumed by close()
+                        log.debug("{}: {} waits for free channel closed - poolSize = {}", address, waiter, poolSize);
+                        return newFailedFuture(waiter, new ClosedChannelException());
+                    }
+                    if(w != null && w.expired){
+                        parentPool.expiredWaits.increment();
+                        log.debug("{}: {} waits for free channel timeout - poolSize = {}", address, waiter, poolSize);
+                        return newFailedFuture(waiter, new TimeoutException("Wait for free channel timeout: maxWait "
+                                + parentPool.maxWait + "ms"));
+                    }
+                    final PooledChannel chan = queue.poll();
+                    if(chan != null){
+                        return newCoFuture(waiter, chan);
+                    }
 
-                final Iterator<Map.Entry<PriorityKey, Queue<PooledChannel>>> i = pool.entrySet().iterator();
-                for(;i.hasNext();){
-                    final Map.Entry<PriorityKey, Queue<PooledChannel>> e = i.next();
-                    if(e.getKey().equals(priorityKey)){
-                        continue;
+                    final Iterator<Map.Entry<PriorityKey, Deque<PooledChannel>>> i = pool.entrySet().iterator();
+                    for(;i.hasNext();){
+                        final Map.Entry<PriorityKey, Deque<PooledChannel>> e = i.next();
+                        if(e.getKey().equals(priorityKey)){
+                            continue;
+                        }
+                        final PooledChannel c = e.getValue().poll();
+                        if(c == null){
+                            continue;
+                        }
+                        return newCoFuture(waiter, c);
                     }
-                    final PooledChannel c = e.getValue().poll();
-                    if(c == null){
-                        continue;
+
+                    log.debug("{}: No free channel in this pool - poolSize = {}", address, poolSize);
+                    if(poolSize < parentPool.maxSize){
+                        break;
                     }
-                    return newCoFuture(waiter, c);
-                }
 
-                log.debug("{}: No free channel in this pool - poolSize = {}", address, poolSize);
-                if(poolSize < parentPool.maxSize){
-                    break;
+                    log.debug("{}: {} waits for free channel in this pool - poolSize = {}", address, waiter, poolSize);
+                    if(w == null){
+                        w = new Waiter(this, waiter);
+                        w.timeout = waiter.group().currentIoGroup().timingWheel
+                                .scheduleAt(w, HashedTimingWheel.currentTime() + parentPool.maxWait);
+                        offerWaiter(w);
+                    }else{
+                        // Resumed but lost the channel to another coroutine, so keep its turn
+                        pushWaiter(w);
+                    }
+                    co.suspend();
+                }
+            } finally {
+                if(w != null){
+                    // Timer of the waiter not needed once it leaves the wait loop
+                    w.cancel();
                 }
-
-                log.debug("{}: {} waits for free channel in this pool - poolSize = {}", address, waiter, poolSize);
-                waiters.offer(waiter);
-                co.suspend();
             }
 
             ++poolSize;
             boolean inited = false;
             try {
-                final Queue<PooledChannel> chanQueue = queue;
+                final Deque<PooledChannel> chanQueue = queue;
                 final SaPool self = this;
                 final CoGroup group = waiter.group();
 
@@ -318,10 +463,7 @@ public class PullChannelPool implements CoHandler, Closeable {
                         if(failed){
                             --poolSize;
                             IoUtils.close(coChan);
-                            final CoRunner another = waiters.poll();
-                            if(another != null){
-                                another.resume();
-                            }
+                            resumeWaiter();
                         }
                     }
 
@@ -332,14 +474,124 @@ public class PullChannelPool implements CoHandler, Closeable {
             } finally {
                 if(!inited){
                     --poolSize;
-                    final CoRunner another = waiters.poll();
-                    if(another != null){
-                        another.resume();
-                    }
+                    resumeWaiter();
                 }
             }
         }
 
+        final void offerWaiter(final Waiter w){
+            final Waiter tail = waiterTail;
+            w.prev = tail;
+            if(tail == null){
+                waiterHead = w;
+            }else{
+                tail.next = w;
+            }
+            waiterTail = w;
+            w.linked = true;
+            ++waiting;
+        }
+
+        final void pushWaiter(final Waiter w){
+            final Waiter head = waiterHead;
+            w.next = head;
+            if(head == null){
+                waiterTail = w;
+            }else{
+                head.prev = w;
+            }
+            waiterHead = w;
+            w.linked = true;
+            ++waiting;
+        }
+
+        final void removeWaiter(final Waiter w){
+            if(!w.linked){
+                return;
+            }
+            final Waiter prev = w.prev, next = w.next;
+            if(prev == null){
+                waiterHead = next;
+            }else{
+                prev.next = next;
+            }
+            if(next == null){
+                waiterTail = prev;
+            }else{
+                next.prev = prev;
+            }
+            w.prev = w.next = null;
+            w.linked = false;
+            --waiting;
+        }
+
+        /**
+         * <p>
+         *     The outstanding requests of this backend: channels in use and coroutines waiting for one.
+         * </p>
+         * @return the outstanding requests
+         */
+        final int outstanding(){
+            int free = 0;
+            for(final Deque<PooledChannel> queue: pool.values()){
+                free += queue.size();
+            }
+            return (poolSize - free + waiting);
+        }
+
+        /**
+         * <p>
+         *     The cost of the backend in the balance policy.
+         * </p>
+         * @param saPool the pool of the backend, or null if no channel acquired yet
+         * @param policy the balance policy
+         * @param defaultLatency the latency assumed when the backend has no sample yet
+         * @return the cost
+         */
+        static double cost(SaPool saPool, BalancePolicy policy, double defaultLatency){
+            final int outstanding = (saPool == null? 0: saPool.outstanding());
+            if(policy == BalancePolicy.EWMA_LATENCY){
+                final double latency = (hasLatency(saPool)? saPool.latencyEwma: defaultLatency);
+                // Weight the latency by the load, so that a fast but busy backend isn't flooded
+                return latency * (outstanding + 1);
+            }
+            return outstanding;
+        }
+
+        static boolean hasLatency(SaPool saPool){
+            return (saPool != null && saPool.latencyEwma > 0.0);
+        }
+
+        final void updateLatency(long nanos){
+            // Not 0 that means no sample
+            nanos = Math.max(nanos, 1L);
+            if(latencyEwma == 0.0){
+                latencyEwma = nanos;
+            }else{
+                latencyEwma += (nanos - latencyEwma) * LATENCY_EWMA_ALPHA;
+            }
+        }
+
+        /**
+         * <p>
+         *     Resume the first waiter when a channel released or a pool slot freed.
+         * </p>
+         */
+        final void resumeWaiter(){
+            final Waiter w = waiterHead;
+            if(w != null){
+                removeWaiter(w);
+                w.runner.resume();
+            }
+        }
+
+        static CoFuture<PullCoChannel> newFailedFuture(CoRunner waiter, Throwable cause){
+            final CoGroup.CoFutureImpl<PullCoChannel> future = new CoGroup.CoFutureImpl<>(waiter);
+            future.setCause(cause);
+            future.run();
+            return future;
+        }
+
         CoFuture<PullCoChannel> newCoFuture(CoRunner waiter, PooledChannel chan){
             CoGroup.CoFutureImpl<PullCoChannel> future = new CoGroup.CoFutureImpl<>(waiter);
             future.setValue(chan);
@@ -350,14 +602,14 @@ public class PullChannelPool implements CoHandler, Closeable {
         }
 
         PooledChannel getChannel(Continuation co, final Set<PooledChannel> beated, final long currentTime){
-            final Iterator<Map.Entry<PriorityKey, Queue<PooledChannel>>> i = pool.entrySet().iterator();
+            final Iterator<Map.Entry<PriorityKey, Deque<PooledChannel>>> i = pool.entrySet().iterator();
             final long bhi = parentPool.heartbeatInterval * 1000L;
-            final Queue<PooledChannel> backed = new LinkedList<>();
+            final Deque<PooledChannel> backed = new ArrayDeque<>();
             final CoRunner coRunner = (CoRunner)co.getContext();
 
             for(; i.hasNext(); ){
-                final Map.Entry<PriorityKey, Queue<PooledChannel>> e = i.next();
-                final Queue<PooledChannel> queue = e.getValue();
+                final Map.Entry<PriorityKey, Deque<PooledChannel>> e = i.next();
+                final Deque<PooledChannel> queue = e.getValue();
                 for(;;){
                     final PooledChannel c = queue.poll();
                     if(c == null || !c.wrappedChan().isOpen()){
@@ -371,23 +623,66 @@ public class PullChannelPool implements CoHandler, Closeable {
                         backed.offer(c);
                         continue;
                     }
-                    queue.addAll(backed);
-                    backed.clear();
+                    restore(queue, backed);
                     c.free = false;
                     log.debug("{}: {} heartbeat acquires channel {} from this pool", address, coRunner.name, c.name);
                     return c;
                 }
-                queue.addAll(backed);
-                backed.clear();
+                restore(queue, backed);
             }
             return null;
         }
 
+        // Put back the channels skipped by heartbeat in their original order
+        private static void restore(final Deque<PooledChannel> queue, final Deque<PooledChannel> backed){
+            for(;;){
+                final PooledChannel c = backed.pollLast();
+                if(c == null){
+                    break;
+                }
+                queue.offerFirst(c);
+            }
+        }
+
+        /**
+         * <p>
+         *     Close the free channels idle for maxIdleTime, the coldest first, but keep minIdle ones.
+         * </p>
+         * @param currentTime the current time(ms)
+         * @return the evicted channels
+         */
+        final int evictIdle(final long currentTime){
+            final long maxIdleTime = parentPool.maxIdleTime;
+            int idle = 0;
+            for(final Deque<PooledChannel> queue: pool.values()){
+                idle += queue.size();
+            }
+            int evicted = 0;
+            for(final Deque<PooledChannel> queue: pool.values()){
+                // The least recently used at the tail in LIFO, at the head in FIFO
+                final Iterator<PooledChannel> i = (parentPool.lifo? queue.descendingIterator(): queue.iterator());
+                for(;idle > parentPool.minIdle && i.hasNext();){
+                    final PooledChannel c = i.next();
+                    if(currentTime - c.lastAccessTime < maxIdleTime){
+                        continue;
+                    }
+                    i.remove();
+                    c.evict();
+                    --idle;
+                    ++evicted;
+                }
+            }
+            if(evicted > 0){
+                log.debug("{}: evict {} idle channels - poolSize = {}", address, evicted, poolSize);
+            }
+            return evicted;
+        }
+
         @Override
         public void close(){
-            final Iterator<Map.Entry<PriorityKey, Queue<PooledChannel>>> i = pool.entrySet().iterator();
+            final Iterator<Map.Entry<PriorityKey, Deque<PooledChannel>>> i = pool.entrySet().iterator();
             for(;i.hasNext(); i.remove()){
-                final Map.Entry<PriorityKey, Queue<PooledChannel>> e = i.next();
+                final Map.Entry<PriorityKey, Deque<PooledChannel>> e = i.next();
                 for(;;){
                     final PooledChannel pooled = e.getValue().poll();
                     if(pooled == null){
@@ -397,9 +692,54 @@ public class PullChannelPool implements CoHandler, Closeable {
                     pooled.close();
                 }
             }
+            // The waiters fail with ClosedChannelException
+            final List<Waiter> waiters = new ArrayList<>(waiting);
+            for(Waiter w = waiterHead; w != null; w = w.next){
+                waiters.add(w);
+            }
+            for(final Waiter w: waiters){
+                removeWaiter(w);
+                w.runner.resume();
+            }
             log.info("{}: {} closed - pollSize = {}", parentPool.name, address, poolSize);
         }
 
+        /**
+         * <p>
+         *     A coroutine waiting for a free channel, resumed by its timer when maxWait expires.
+         * </p>
+         */
+        static class Waiter implements Runnable {
+            final SaPool saPool;
+            final CoRunner runner;
+            Waiter prev, next;
+            boolean linked, expired;
+            HashedTimingWheel.Timeout timeout;
+
+            Waiter(SaPool saPool, CoRunner runner){
+                this.saPool = saPool;
+                this.runner = runner;
+            }
+
+            @Override
+            public void run(){
+                timeout = null;
+                expired = true;
+                if(linked){
+                    saPool.removeWaiter(this);
+                    runner.resume();
+                }
+            }
+
+            final void cancel(){
+                final HashedTimingWheel.Timeout t = timeout;
+                if(t != null){
+                    timeout = null;
+                    t.cancel();
+                }
+            }
+        }// Waiter
+
         static class PooledChannel extends PullCoChannel {
             final static Logger log = LoggerFactory.getLogger(PooledChannel.class);
 
@@ -408,12 +748,16 @@ public class PullChannelPool implements CoHandler, Closeable {
             private boolean open;
             boolean free;
 
-            long lastAccessTime;
+            long lastAccessTime = System.currentTimeMillis();
+            // Released by heartbeat, which isn't an access
+            boolean beating;
             private boolean ioe;
 
             public PooledChannel(SaPool saPool, PriorityKey priorityKey, PullCoChannel chan){
                 super(chan);
                 this.saPool = saPool;
+                // Sample the latency on the wrapped channel, where the codecs of execute() do I/O too
+                chan.saPool = saPool;
                 this.priorityKey = priorityKey;
                 this.open = true;
                 this.free = true;
@@ -421,13 +765,18 @@ public class PullChannelPool implements CoHandler, Closeable {
 
             @Override
             public int read(Continuation co, ByteBuffer dst) throws IOException {
+                return read(co, dst, 0L);
+            }
+
+            @Override
+            public int read(Continuation co, ByteBuffer dst, long timeoutMillis) throws IOException {
                 final CoChannel wrapped = wrappedChan();
                 final Object oldCtx = co.getContext();
                 boolean failed = true;
                 try {
                     // Switch pooled to wrapped
                     co.setContext(wrapped);
-                    final int i = wrapped.read(co, dst);
+                    final int i = wrapped.read(co, dst, timeoutMillis);
                     if(i != 0){
                         this.lastAccessTime = System.currentTimeMillis();
                         if(i == -1){
@@ -446,12 +795,17 @@ public class PullChannelPool implements CoHandler, Closeable {
 
             @Override
             public int write(Continuation co, ByteBuffer src) throws IOException {
+                return write(co, src, 0L);
+            }
+
+            @Override
+            public int write(Continuation co, ByteBuffer src, long timeoutMillis) throws IOException {
                 final CoChannel wrapped = wrappedChan();
                 final Object oldCtx = co.getContext();
                 boolean failed = true;
                 try{
                     co.setContext(wrapped);
-                    final int n = wrapped.write(co, src);
+                    final int n = wrapped.write(co, src, timeoutMillis);
                     if(n > 0){
                         this.lastAccessTime = System.currentTimeMillis();
                     }
@@ -465,6 +819,138 @@ public class PullChannelPool implements CoHandler, Closeable {
                 }
             }
 
+            @Override
+            public long read(Continuation co, ByteBuffer[] dsts) throws IOException {
+                return read(co, dsts, 0L);
+            }
+
+            @Override
+            public long read(Continuation co, ByteBuffer[] dsts, long timeoutMillis) throws IOException {
+                final CoChannel wrapped = wrappedChan();
+                final Object oldCtx = co.getContext();
+                boolean failed = true;
+                try {
+                    co.setContext(wrapped);
+                    final long i = wrapped.read(co, dsts, timeoutMillis);
+                    if(i != 0L){
+                        this.lastAccessTime = System.currentTimeMillis();
+                    }
+                    failed = false;
+                    return i;
+                } finally {
+                    co.setContext(oldCtx);
+                    if(failed){
+                        this.ioe = true;
+                    }
+                }
+            }
+
+            @Override
+            public long write(Continuation co, ByteBuffer[] srcs) throws IOException {
+                return write(co, srcs, 0L);
+            }
+
+            @Override
+            public long write(Continuation co, ByteBuffer[] srcs, long timeoutMillis) throws IOException {
+                final CoChannel wrapped = wrappedChan();
+                final Object oldCtx = co.getContext();
+                boolean failed = true;
+                try{
+                    co.setContext(wrapped);
+                    final long n = wrapped.write(co, srcs, timeoutMillis);
+                    if(n > 0L){
+                        this.lastAccessTime = System.currentTimeMillis();
+                    }
+                    failed = false;
+                    return n;
+                } finally {
+                    co.setContext(oldCtx);
+                    if(failed){
+                        this.ioe = true;
+                    }
+                }
+            }
+
+            @Override
+            public void writeLater(ByteBuffer src) {
+                wrappedChan().writeLater(src);
+            }
+
+            @Override
+            public long flush(Continuation co) throws IOException {
+                final CoChannel wrapped = wrappedChan();
+                final Object oldCtx = co.getContext();
+                boolean failed = true;
+                try{
+                    co.setContext(wrapped);
+                    final long n = wrapped.flush(co);
+                    if(n > 0L){
+                        this.lastAccessTime = System.currentTimeMillis();
+                    }
+                    failed = false;
+                    return n;
+                } finally {
+                    co.setContext(oldCtx);
+                    if(failed){
+                        this.ioe = true;
+                    }
+                }
+            }
+
+            @Override
+            public long transferFrom(Continuation co, FileChannel src, long position, long count)
+                    throws IOException {
+                return transferFrom(co, src, position, count, 0L);
+            }
+
+            @Override
+            public long transferFrom(Continuation co, FileChannel src, long position, long count,
+                                     long timeoutMillis) throws IOException {
+                final CoChannel wrapped = wrappedChan();
+                final Object oldCtx = co.getContext();
+                boolean failed = true;
+                try{
+                    co.setContext(wrapped);
+                    final long n = wrapped.transferFrom(co, src, position, count, timeoutMillis);
+                    if(n > 0L){
+                        this.lastAccessTime = System.currentTimeMillis();
+                    }
+                    failed = false;
+                    return n;
+                } finally {
+                    co.setContext(oldCtx);
+                    if(failed){
+                        this.ioe = true;
+                    }
+                }
+            }
+
+            @Override
+            public int readInBuffer(Continuation co) throws IOException {
+                final CoChannel wrapped = wrappedChan();
+                final Object oldCtx = co.getContext();
+                boolean failed = true;
+                try {
+                    co.setContext(wrapped);
+                    final int i = wrapped.readInBuffer(co);
+                    if(i != 0){
+                        this.lastAccessTime = System.currentTimeMillis();
+                    }
+                    failed = false;
+                    return i;
+                } finally {
+                    co.setContext(oldCtx);
+                    if(failed){
+                        this.ioe = true;
+                    }
+                }
+            }
+
+            @Override
+            public void pauseRead() {
+                wrappedChan().pauseRead();
+            }
+
             @Override
             public ByteBuffer inBuffer() {
                 return wrappedChan().inBuffer();
@@ -498,7 +984,9 @@ public class PullChannelPool implements CoHandler, Closeable {
 
                 final SaPool saPool = this.saPool;
                 try{
-                    final CoChannel wrappedChan = wrappedChan();
+                    final PullCoChannel wrappedChan = wrappedChan();
+                    // A request without response isn't timed into the next use
+                    wrappedChan.resetRequestTime();
                     if(this.ioe || !wrappedChan.isOpen() || (!saPool.parentPool.isOpen())){
                         wrappedChan.close();
                         this.open = false;
@@ -506,18 +994,34 @@ public class PullChannelPool implements CoHandler, Closeable {
                         return;
                     }
 
-                    final Queue<PooledChannel> subPool = saPool.pool.get(priorityKey);
-                    subPool.offer(this);
+                    final Deque<PooledChannel> subPool = saPool.pool.get(priorityKey);
+                    if(beating){
+                        // Keep its idle time and cold position for eviction
+                        subPool.offerLast(this);
+                    }else{
+                        this.lastAccessTime = System.currentTimeMillis();
+                        if(saPool.parentPool.lifo){
+                            // The most recently used is reused first, so a small set of channels stays hot
+                            subPool.offerFirst(this);
+                        }else{
+                            subPool.offerLast(this);
+                        }
+                    }
                     this.free = true;
                     log.debug("{}: release channel {} into this pool", saPool.address, this.name);
                 } finally {
-                    final CoRunner waiter = saPool.waiters.poll();
-                    if(waiter != null){
-                        waiter.resume();
-                    }
+                    this.beating = false;
+                    saPool.resumeWaiter();
                 }
             }
 
+            final void evict(){
+                this.free = false;
+                this.open = false;
+                --saPool.poolSize;
+                IoUtils.close(wrappedChan());
+            }
+
             PullCoChannel wrappedChan(){
                 return (PullCoChannel)wrapped;
             }
@@ -530,6 +1034,18 @@ public class PullChannelPool implements CoHandler, Closeable {
 
     }// SaPool
 
+    /**
+     * <p>
+     *     The policy of choosing a backend in getChannel() for a list of addresses.
+     * </p>
+     */
+    public enum BalancePolicy {
+        // The backend with fewer channels in use and waiters
+        LEAST_OUTSTANDING,
+        // The backend with lower EWMA latency weighted by its outstanding requests
+        EWMA_LATENCY
+    }// BalancePolicy
+
     public interface PriorityKey {
         PriorityKey SINGLE = new PriorityKey() {};
     }// PriorityKey
@@ -560,14 +1076,23 @@ public class PullChannelPool implements CoHandler, Closeable {
 
     static class Builder {
 
-        private PullChannelPool pool;
+        private final CoGroup group;
+
+        private String name = "PullChanPool";
+        private int maxSize = (RtUtils.PROCESSORS << 2) + 1;
+        private long maxWait = 30000L;
+        private long heartbeatInterval = 30L;
+        private HeartbeatCodec heartbeatCodec;
+        private boolean lifo;
+        private int minIdle;
+        private long maxIdleTime;
 
         Builder(CoGroup group){
-            pool = new PullChannelPool(group);
+            this.group = group;
         }
 
         public Builder setName(String name){
-            pool.name = name;
+            this.name = name;
             return this;
         }
 
@@ -575,7 +1100,7 @@ public class PullChannelPool implements CoHandler, Closeable {
             if(maxSize < 1){
                 throw new IllegalArgumentException("maxSize " + maxSize);
             }
-            pool.maxSize = maxSize;
+            this.maxSize = maxSize;
             return this;
         }
 
@@ -583,23 +1108,60 @@ public class PullChannelPool implements CoHandler, Closeable {
             if(maxWait < 1){
                 throw new IllegalArgumentException("maxWait " + maxWait);
             }
-            pool.maxWait = maxWait;
+            this.maxWait = maxWait;
             return this;
         }
 
         public Builder setHeartbeatInterval(long heartbeatInterval){
-            pool.heartbeatInterval = heartbeatInterval;
+            this.heartbeatInterval = heartbeatInterval;
             return this;
         }
 
         public Builder setHeartbeatCodec(HeartbeatCodec heartbeatCodec){
-            pool.heartbeatCodec = heartbeatCodec;
+            this.heartbeatCodec = heartbeatCodec;
+            return this;
+        }
+
+        public Builder setLifo(boolean lifo){
+            this.lifo = lifo;
+            return this;
+        }
+
+        public Builder setMinIdle(int minIdle){
+            if(minIdle < 0){
+                throw new IllegalArgumentException("minIdle " + minIdle);
+            }
+            this.minIdle = minIdle;
+            return this;
+        }
+
+        public Builder setMaxIdleTime(long maxIdleTime){
+            if(maxIdleTime < 0){
+                throw new IllegalArgumentException("maxIdleTime " + maxIdleTime);
+            }
+            this.maxIdleTime = maxIdleTime;
             return this;
         }
 
+        /**
+         * <p>
+         *     Build a new pool, and each event loop of the CoGroup calls it for its own pool.
+         * </p>
+         * @return a new pull channel pool
+         */
         public PullChannelPool build(){
-            log.info("{}: Started - maxSize = {}, maxWait = {}ms, heartbeatInterval = {}s",
-                    pool.name, pool.maxSize, pool.maxWait, pool.heartbeatInterval);
+            final PullChannelPool pool = new PullChannelPool(group);
+            pool.name = name;
+            pool.maxSize = maxSize;
+            pool.maxWait = maxWait;
+            pool.heartbeatInterval = heartbeatInterval;
+            pool.heartbeatCodec = heartbeatCodec;
+            pool.lifo = lifo;
+            pool.minIdle = minIdle;
+            pool.maxIdleTime = maxIdleTime;
+            log.info("{}: Started - maxSize = {}, maxWait = {}ms, heartbeatInterval = {}s, lifo = {}, "
+                    + "minIdle = {}, maxIdleTime = {}ms", pool.name, pool.maxSize, pool.maxWait,
+                    pool.heartbeatInterval, pool.lifo, pool.minIdle, pool.maxIdleTime);
             return pool;
         }
 
@@ -16,8 +16,10 @@
  */
 package io.conio;
 
+import com.offbynull.coroutines.user.Continuation;
 import io.conio.util.IoUtils;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 
 /**
@@ -30,6 +32,15 @@ import java.nio.ByteBuffer;
 public abstract class PullCoChannel extends PullCoRunner implements CoChannel {
 
     private ByteBuffer inBuffer, outBuffer;
+    // The buffers allocated by this channel, released when closed
+    private boolean inAllocated, outAllocated;
+    // The coroutine of this channel has finished, so it no longer uses the buffers
+    private boolean finished;
+
+    // The pool of the backend that samples the response latency of this channel, or null if not pooled
+    PullChannelPool.SaPool saPool;
+    // The time(ns) when the request in flight was first written, or 0 if none
+    private long requestTime;
 
     protected PullCoChannel(final int id, CoGroup group){
         super(id, "pullChan-co-"+id, group);
@@ -39,17 +50,35 @@ public abstract class PullCoChannel extends PullCoRunner implements CoChannel {
         super(wrapped);
     }
 
+    @Override
+    public void run(Continuation co){
+        try{
+            super.run(co);
+        }finally {
+            finished = true;
+            releaseBuffers();
+        }
+    }
+
     @Override
     public ByteBuffer inBuffer(){
         if(this.inBuffer == null){
             inBuffer(allocate(group.getBufferSize()));
+            this.inAllocated = true;
         }
         return this.inBuffer;
     }
 
     @Override
     public PullCoChannel inBuffer(ByteBuffer buffer){
-        this.inBuffer = IoUtils.copyToInBuffer(this.inBuffer, buffer);
+        final ByteBuffer old = this.inBuffer;
+        this.inBuffer = IoUtils.copyToInBuffer(old, buffer);
+        if(old != buffer){
+            if(old != null && this.inAllocated){
+                release(old);
+            }
+            this.inAllocated = false;
+        }
         return this;
     }
 
@@ -57,14 +86,137 @@ public abstract class PullCoChannel extends PullCoRunner implements CoChannel {
     public ByteBuffer outBuffer(){
         if(this.outBuffer == null){
             outBuffer(allocate(group.getBufferSize()));
+            this.outAllocated = true;
         }
         return this.outBuffer;
     }
 
     @Override
     public PullCoChannel outBuffer(ByteBuffer buffer){
-        this.outBuffer = IoUtils.copyToOutBuffer(this.outBuffer, buffer);
+        final ByteBuffer old = this.outBuffer;
+        this.outBuffer = IoUtils.copyToOutBuffer(old, buffer);
+        if(old != buffer){
+            if(old != null && this.outAllocated){
+                release(old);
+            }
+            this.outAllocated = false;
+        }
         return this;
     }
 
+    @Override
+    public int readInBuffer(Continuation co) throws IOException {
+        if(group.isReleaseIdleBuffers()){
+            releaseIdleBuffers();
+            if(this.inBuffer == null){
+                waitReadable(co);
+                if(this.inBuffer == null){
+                    // Reallocate as cleared as the released one
+                    inBuffer().clear();
+                }
+            }
+        }
+        return read(co, inBuffer());
+    }
+
+    /**
+     * Start timing the request on its first bytes written, for the latency of the pooled backend.
+     *
+     * @param n the bytes written
+     * @return n
+     */
+    protected final long sent(final long n){
+        if(n > 0L && requestTime == 0L && saPool != null){
+            requestTime = System.nanoTime();
+        }
+        return n;
+    }
+
+    protected final int sent(final int n){
+        sent((long)n);
+        return n;
+    }
+
+    /**
+     * Sample the latency of the pooled backend on the first bytes of the response read.
+     *
+     * @param n the bytes read
+     * @return n
+     */
+    protected final long received(final long n){
+        final long ts = requestTime;
+        if(n > 0L && ts != 0L){
+            requestTime = 0L;
+            saPool.updateLatency(System.nanoTime() - ts);
+        }
+        return n;
+    }
+
+    protected final int received(final int n){
+        received((long)n);
+        return n;
+    }
+
+    /**
+     * Drop the timing of a request without response, e.g. when the channel released to the pool.
+     */
+    final void resetRequestTime(){
+        requestTime = 0L;
+    }
+
+    /**
+     * @return true if an I/O operation of the io threads may be still using the buffers
+     */
+    protected boolean isIoPending(){
+        return false;
+    }
+
+    /**
+     * Wait for the channel readable before allocating the inBuffer, or return at once if the
+     * channel can't wait without a buffer.
+     *
+     * @param co the continuation
+     * @throws IOException if an I/O error occurs
+     */
+    protected void waitReadable(Continuation co) throws IOException {
+
+    }
+
+    /**
+     * Release the cleared buffers allocated by this channel.
+     */
+    protected void releaseIdleBuffers(){
+        final ByteBuffer in = this.inBuffer, out = this.outBuffer;
+        if(in != null && this.inAllocated && in.position() == 0 && in.limit() == in.capacity()){
+            this.inBuffer = null;
+            this.inAllocated = false;
+            release(in);
+        }
+        if(out != null && this.outAllocated && out.position() == 0 && out.limit() == out.capacity()){
+            this.outBuffer = null;
+            this.outAllocated = false;
+            release(out);
+        }
+    }
+
+    /**
+     * Release the buffers allocated by this channel when closed, but not until the coroutine of this
+     * channel and the pending I/O operation have done with them, e.g. a late aio read completion.
+     */
+    protected void releaseBuffers(){
+        if(isOpen() || !(finished || isIdle()) || isIoPending()){
+            // Still used by a task or a pending I/O operation, then released when they're done
+            return;
+        }
+        final ByteBuffer in = this.inBuffer, out = this.outBuffer;
+        this.inBuffer = this.outBuffer = null;
+        if(in != null && this.inAllocated){
+            release(in);
+        }
+        if(out != null && this.outAllocated){
+            release(out);
+        }
+        this.inAllocated = this.outAllocated = false;
+    }
+
 }
@@ -23,6 +23,7 @@ import io.conio.util.CoFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.channels.ClosedChannelException;
 import java.util.LinkedList;
 import java.util.Queue;
 import java.util.concurrent.ExecutionException;
@@ -40,24 +41,29 @@ public class PullCoRunner extends CoRunner {
     protected final PullCoRunner wrapped;
 
     private final Queue<CoFutureTask<?>> coQueue;
+    // Pipelined tasks whose requests have been encoded, waiting for their responses in FIFO order
+    private final Queue<CoFutureTask<?>> inflight;
     private boolean idle;
     private boolean stopped;
 
     public PullCoRunner(final int id, CoGroup group){
         super(id, "pull-co-"+id, group);
         this.coQueue = new LinkedList<>();
+        this.inflight = new LinkedList<>();
         this.wrapped = null;
     }
 
     public PullCoRunner(final int id, String name, CoGroup group){
         super(id, name, group);
         this.coQueue = new LinkedList<>();
+        this.inflight = new LinkedList<>();
         this.wrapped = null;
     }
 
     public PullCoRunner(PullCoRunner wrapped){
         super(wrapped);
         this.coQueue = wrapped.coQueue;
+        this.inflight = wrapped.inflight;
         this.wrapped = wrapped;
     }
 
@@ -71,11 +77,39 @@ public class PullCoRunner extends CoRunner {
      */
     public <V> CoFuture<V> execute(final CoCallable<V> coCallable){
         final CoFutureTask<V> f = new CoFutureTask<>(coCallable);
+        offer(f);
+        return f;
+    }
+
+    /**
+     * <p>
+     * Execute a request in pipelined mode: the encoders of the queued requests are called back to back,
+     * then the decoder of each request is called in FIFO order, so that many requests are in flight on
+     * the channel at the same time, up to {@link CoGroup#getMaxPipelinedRequests()}. The peer must respond
+     * in the order of requests. A task that isn't pipelined waits for all responses in flight before it runs.
+     * If an encoder or decoder fails, the byte stream may be out of sync, so all requests in flight fail
+     * and this runner stops, e.g. the channel is closed.
+     * </p>
+     * @param encoder the callable that sends the request
+     * @param decoder the callable that receives the response
+     * @param <V>
+     * @return the decoder future
+     */
+    public <V> CoFuture<V> execute(final CoCallable<?> encoder, final CoCallable<V> decoder){
+        final CoFutureTask<V> f = new CoFutureTask<>(encoder, decoder);
+        offer(f);
+        return f;
+    }
+
+    private void offer(final CoFutureTask<?> f){
+        if(isStopped()){
+            f.setCause(new ClosedChannelException());
+            return;
+        }
         coQueue.offer(f);
         if(isIdle()){
             resume();
         }
-        return f;
     }
 
     public boolean isStopped(){
@@ -120,15 +154,48 @@ public class PullCoRunner extends CoRunner {
                 idle = false;
             }
         }
-        coQueue.clear();
         stopped = true;
+        failTasks(inflight);
+        failTasks(coQueue);
         log.debug("{}: Stopped", name);
     }
 
     private void handleCoTasks(Continuation co){
-        for(;;){
+        for(;!isStopped();){
             final CoFutureTask<?> f = coQueue.poll();
             if(f == null){
+                if(inflight.isEmpty()){
+                    break;
+                }
+                // All queued requests sent, so receive the next response
+                decode(co);
+                continue;
+            }
+            if(f.encoder != null){
+                // Receive responses before sending more, or the peer blocks on writing them
+                // when they fill the socket buffers and then stops reading the requests
+                for(final int max = group.getMaxPipelinedRequests(); inflight.size() >= max && !isStopped();){
+                    decode(co);
+                }
+                if(isStopped()){
+                    f.setCause(new ClosedChannelException());
+                    break;
+                }
+                try {
+                    f.encoder.call(co);
+                    inflight.offer(f);
+                }catch(final Throwable cause){
+                    // The request may be written in part
+                    f.setCause(cause);
+                    failInflight(cause);
+                }
+                continue;
+            }
+            for(;!inflight.isEmpty();){
+                decode(co);
+            }
+            if(isStopped()){
+                f.setCause(new ClosedChannelException());
                 break;
             }
             try {
@@ -141,6 +208,39 @@ public class PullCoRunner extends CoRunner {
         }
     }
 
+    private void decode(Continuation co){
+        final CoFutureTask<?> f = inflight.poll();
+        try {
+            final Object result = f.coCallable.call(co);
+            f.setValue(result);
+        }catch(final Throwable cause){
+            f.setCause(cause);
+            failInflight(cause);
+        }
+    }
+
+    // The byte stream is out of sync, so fail the rest in flight, and no more requests on it
+    private void failInflight(final Throwable cause){
+        for(;;){
+            final CoFutureTask<?> next = inflight.poll();
+            if(next == null){
+                break;
+            }
+            next.setCause(cause);
+        }
+        stop();
+    }
+
+    private void failTasks(final Queue<CoFutureTask<?>> tasks){
+        for(;;){
+            final CoFutureTask<?> f = tasks.poll();
+            if(f == null){
+                break;
+            }
+            f.setCause(new ClosedChannelException());
+        }
+    }
+
     public final boolean isIdle(){
         if(wrapped != null){
             return wrapped.idle;
@@ -149,10 +249,17 @@ public class PullCoRunner extends CoRunner {
     }
 
     static class CoFutureTask<V> extends AbstractCoFuture<V> {
+        // The encoder of a pipelined task, and coCallable is its decoder
+        final CoCallable<?> encoder;
         final CoCallable<V> coCallable;
 
         public CoFutureTask(final CoCallable<V> coCallable){
+            this(null, coCallable);
+        }
+
+        public CoFutureTask(final CoCallable<?> encoder, final CoCallable<V> coCallable){
             super(null);
+            this.encoder = encoder;
             this.coCallable = coCallable;
         }
 
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2018, little-pan, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package io.conio.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ * The allocator of channel buffers. The buffers allocated by a channel are released to
+ * its allocator when the channel is closed, once its coroutine has finished and no pending
+ * I/O operation uses them, so don't keep them beyond the coroutine of the channel.
+ * </p>
+ */
+public interface BufferAllocator {
+
+    /**
+     * Allocate a cleared buffer.
+     *
+     * @param capacity the buffer capacity
+     * @return the buffer
+     */
+    ByteBuffer allocate(int capacity);
+
+    /**
+     * Give back a buffer allocated by this allocator.
+     *
+     * @param buffer the buffer
+     */
+    void release(ByteBuffer buffer);
+
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2018, little-pan, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package io.conio.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * A hashed timing wheel that is advanced by its owner thread, such as an event loop. Timeouts are
+ * hashed into buckets by deadline tick, so that scheduling and cancelling are O(1). It's not thread-safe.
+ * </p>
+ */
+public class HashedTimingWheel {
+    final static Logger log = LoggerFactory.getLogger(HashedTimingWheel.class);
+
+    private final long tickDuration;
+    private final int mask;
+    private final Timeout[] wheel;
+    private final long startTime;
+
+    // The last expired tick
+    private long tick;
+    private int size;
+
+    /**
+     * @param tickDuration the tick duration in millis
+     * @param wheelSize the bucket count, rounded up to a power of 2
+     */
+    public HashedTimingWheel(long tickDuration, int wheelSize){
+        if(tickDuration < 1L){
+            throw new IllegalArgumentException("tickDuration " + tickDuration);
+        }
+        if(wheelSize < 1 || wheelSize > (1 << 30)){
+            throw new IllegalArgumentException("wheelSize " + wheelSize);
+        }
+        int n = 1;
+        for(; n < wheelSize; n <<= 1);
+        this.tickDuration = tickDuration;
+        this.mask = n - 1;
+        this.wheel = new Timeout[n];
+        this.startTime = currentTime();
+    }
+
+    /**
+     * @return the monotonic current time in millis
+     */
+    public final static long currentTime(){
+        return System.nanoTime() / 1000000L;
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public Timeout schedule(Runnable task, long delay){
+        return scheduleAt(task, currentTime() + delay);
+    }
+
+    /**
+     * Schedule the task at the deadline in {@link #currentTime()} base.
+     *
+     * @param task the task
+     * @param deadline the deadline millis
+     * @return the timeout
+     */
+    public Timeout scheduleAt(Runnable task, long deadline){
+        final Timeout timeout = new Timeout(this, task);
+        add(timeout, deadline);
+        return timeout;
+    }
+
+    /**
+     * Reschedule a timeout that has expired or been cancelled, without allocation.
+     *
+     * @param timeout the timeout of this wheel
+     * @param delay the delay millis
+     * @return the timeout
+     */
+    public Timeout reschedule(Timeout timeout, long delay){
+        return rescheduleAt(timeout, currentTime() + delay);
+    }
+
+    public Timeout rescheduleAt(Timeout timeout, long deadline){
+        if(timeout.wheel != this){
+            throw new IllegalArgumentException("Timeout not in this wheel");
+        }
+        if(timeout.pending){
+            remove(timeout);
+        }
+        add(timeout, deadline);
+        return timeout;
+    }
+
+    /**
+     * Expire and run the timeouts whose deadline has been reached.
+     *
+     * @return the expired timeout count
+     */
+    public int expire(){
+        final long target = (currentTime() - startTime) / tickDuration;
+        if(target <= tick){
+            return 0;
+        }
+
+        // Collect expired timeouts first, so that the tasks schedule after the new tick
+        Timeout head = null, tail = null;
+        final long end = Math.min(target, tick + wheel.length);
+        for(long t = tick + 1L; t <= end; ++t){
+            for(Timeout e = wheel[(int)t & mask]; e != null;){
+                final Timeout next = e.next;
+                if(e.deadlineTick <= target){
+                    remove(e);
+                    e.due = true;
+                    if(tail == null){
+                        head = e;
+                    }else{
+                        tail.nextDue = e;
+                    }
+                    tail = e;
+                }
+                e = next;
+            }
+        }
+        tick = target;
+
+        // A task may cancel or reschedule the due timeouts after it, then they're skipped
+        int n = 0;
+        for(Timeout e = head; e != null;){
+            final Timeout next = e.nextDue;
+            e.nextDue = null;
+            if(e.due){
+                e.due = false;
+                e.expired = true;
+                ++n;
+                try{
+                    e.task.run();
+                }catch(final Throwable cause){
+                    log.warn("Timeout task error", cause);
+                }
+            }
+            e = next;
+        }
+        return n;
+    }
+
+    /**
+     * The millis to the next tick that has timeouts, for the select or poll timeout of the owner.
+     *
+     * @return the delay millis, or -1 if no timeout
+     */
+    public long nextDelay(){
+        if(size == 0){
+            return -1L;
+        }
+        final long now = currentTime();
+        final long end = tick + wheel.length;
+        for(long t = tick + 1L; t <= end; ++t){
+            if(wheel[(int)t & mask] != null){
+                return Math.max(0L, startTime + t * tickDuration - now);
+            }
+        }
+        return -1L;
+    }
+
+    private void add(final Timeout timeout, final long deadline){
+        final long ticks = deadline - startTime;
+        long deadlineTick = ticks / tickDuration;
+        if(ticks % tickDuration != 0L){
+            ++deadlineTick;
+        }
+        if(deadlineTick <= tick){
+            deadlineTick = tick + 1L;
+        }
+        timeout.deadline = deadline;
+        timeout.deadlineTick = deadlineTick;
+        timeout.expired = false;
+        timeout.cancelled = false;
+        timeout.due = false;
+
+        final int i = (int)deadlineTick & mask;
+        final Timeout head = wheel[i];
+        timeout.prev = null;
+        timeout.next = head;
+        if(head != null){
+            head.prev = timeout;
+        }
+        wheel[i] = timeout;
+        timeout.pending = true;
+        ++size;
+    }
+
+    private void remove(final Timeout timeout){
+        final Timeout prev = timeout.prev, next = timeout.next;
+        if(prev == null){
+            wheel[(int)timeout.deadlineTick & mask] = next;
+        }else{
+            prev.next = next;
+        }
+        if(next != null){
+            next.prev = prev;
+        }
+        timeout.prev = timeout.next = null;
+        timeout.pending = false;
+        --size;
+    }
+
+    public final static class Timeout {
+        final HashedTimingWheel wheel;
+        final Runnable task;
+
+        private Timeout prev, next;
+        // The link of the due timeouts in expiring
+        private Timeout nextDue;
+        private long deadline;
+        private long deadlineTick;
+        private boolean pending;
+        private boolean due;
+        private boolean expired;
+        private boolean cancelled;
+
+        Timeout(HashedTimingWheel wheel, Runnable task){
+            this.wheel = wheel;
+            this.task = task;
+        }
+
+        public long deadline(){
+            return deadline;
+        }
+
+        public boolean isPending(){
+            return (pending || due);
+        }
+
+        public boolean isExpired(){
+            return expired;
+        }
+
+        public boolean isCancelled(){
+            return cancelled;
+        }
+
+        /**
+         * Cancel this timeout, only called by the owner thread of the wheel.
+         *
+         * @return true if cancelled, false if expired or cancelled
+         */
+        public boolean cancel(){
+            if(pending){
+                wheel.remove(this);
+            }else if(due){
+                due = false;
+            }else{
+                return false;
+            }
+            cancelled = true;
+            return true;
+        }
+
+    }// Timeout
+
+}
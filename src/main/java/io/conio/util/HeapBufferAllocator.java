@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2018, little-pan, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package io.conio.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ * The default allocator of heap buffers, that are collected by GC.
+ * </p>
+ */
+public class HeapBufferAllocator implements BufferAllocator {
+
+    public final static HeapBufferAllocator INSTANCE = new HeapBufferAllocator();
+
+    protected HeapBufferAllocator(){
+
+    }
+
+    @Override
+    public ByteBuffer allocate(int capacity){
+        return ByteBuffer.allocate(capacity);
+    }
+
+    @Override
+    public void release(ByteBuffer buffer){
+        // GC
+    }
+
+}
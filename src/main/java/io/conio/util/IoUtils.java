@@ -18,7 +18,10 @@ package io.conio.util;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.net.SocketOption;
 import java.nio.ByteBuffer;
+import java.nio.channels.NetworkChannel;
+import java.util.Collection;
 
 public final class IoUtils {
 
@@ -32,6 +35,39 @@ public final class IoUtils {
         }
     }
 
+    /**
+     * Enable SO_REUSEPORT, which is looked up by name for it's not a standard option before java 9.
+     *
+     * @param chan the unbound channel
+     * @throws IOException if SO_REUSEPORT not supported or set error
+     */
+    @SuppressWarnings("unchecked")
+    public final static void setReusePort(NetworkChannel chan)throws IOException {
+        for(final SocketOption<?> option: chan.supportedOptions()){
+            if("SO_REUSEPORT".equals(option.name())){
+                chan.setOption((SocketOption<Boolean>)option, Boolean.TRUE);
+                return;
+            }
+        }
+        throw new IOException("SO_REUSEPORT not supported");
+    }
+
+    public final static long remaining(final ByteBuffer[] buffers){
+        long n = 0L;
+        for(final ByteBuffer buffer: buffers){
+            n += buffer.remaining();
+        }
+        return n;
+    }
+
+    public final static long remaining(final Collection<ByteBuffer> buffers){
+        long n = 0L;
+        for(final ByteBuffer buffer: buffers){
+            n += buffer.remaining();
+        }
+        return n;
+    }
+
     public final static ByteBuffer copyToInBuffer(ByteBuffer src, ByteBuffer unused){
         if(unused == src){
             return unused;
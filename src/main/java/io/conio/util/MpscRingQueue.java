@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2018, little-pan, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package io.conio.util;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>
+ * A bounded lock-free multi-producer/single-consumer queue over an array ring. Producers claim
+ * a slot by CAS on the tail and offer without allocation, and only one consumer thread can poll it.
+ * </p>
+ * @param <E> the element type
+ */
+public class MpscRingQueue<E> extends AbstractQueue<E> {
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<E> ring;
+
+    // Producers claim the tail, and the consumer owns the head
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    // The consumer parked in poll(timeout)
+    private volatile Thread waiter;
+
+    public MpscRingQueue(final int capacity){
+        if(capacity < 1 || capacity > (1 << 30)){
+            throw new IllegalArgumentException("capacity " + capacity);
+        }
+        int size = 1;
+        for(; size < capacity; size <<= 1);
+        this.capacity = capacity;
+        this.mask = size - 1;
+        this.ring = new AtomicReferenceArray<>(size);
+    }
+
+    public int capacity(){
+        return capacity;
+    }
+
+    public boolean isFull(){
+        return (tail.get() - head.get() >= capacity);
+    }
+
+    @Override
+    public boolean offer(E e){
+        if(e == null){
+            throw new NullPointerException();
+        }
+        for(;;){
+            final long t = tail.get();
+            if(t - head.get() >= capacity){
+                return false;
+            }
+            if(tail.compareAndSet(t, t + 1)){
+                // Volatile store pairs with the waiter check
+                ring.set((int)t & mask, e);
+                final Thread w = waiter;
+                if(w != null){
+                    LockSupport.unpark(w);
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Retrieve and remove the head element, only called by the consumer thread.
+     *
+     * @return the head element, or null if this queue is empty
+     */
+    @Override
+    public E poll(){
+        final long h = head.get();
+        final int i = (int)h & mask;
+        E e = ring.get(i);
+        if(e == null){
+            if(h == tail.get()){
+                return null;
+            }
+            // The slot has been claimed but the producer not stored yet
+            for(; (e = ring.get(i)) == null;);
+        }
+        ring.lazySet(i, null);
+        head.lazySet(h + 1L);
+        return e;
+    }
+
+    /**
+     * Retrieve and remove the head element, waiting up to the timeout if necessary, only
+     * called by the consumer thread.
+     *
+     * @param timeout the max wait time
+     * @param unit the time unit
+     * @return the head element, or null if timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        E e = poll();
+        if(e != null){
+            return e;
+        }
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        waiter = Thread.currentThread();
+        try{
+            for(;;){
+                e = poll();
+                if(e != null){
+                    return e;
+                }
+                final long nanos = deadline - System.nanoTime();
+                if(nanos <= 0L){
+                    return null;
+                }
+                LockSupport.parkNanos(this, nanos);
+                if(Thread.interrupted()){
+                    throw new InterruptedException();
+                }
+            }
+        }finally {
+            waiter = null;
+        }
+    }
+
+    @Override
+    public E peek(){
+        return ring.get((int)head.get() & mask);
+    }
+
+    @Override
+    public boolean isEmpty(){
+        return (head.get() == tail.get());
+    }
+
+    @Override
+    public int size(){
+        final long size = tail.get() - head.get();
+        if(size < 0L){
+            return 0;
+        }
+        return (int)Math.min(size, capacity);
+    }
+
+    /**
+     * Iterate over a snapshot of the elements from head to tail, only called by the consumer thread.
+     * Elements offered after this call aren't seen, and the iterator doesn't support remove().
+     *
+     * @return the snapshot iterator
+     */
+    @Override
+    public Iterator<E> iterator(){
+        final long h = head.get();
+        final int n = (int)Math.min(Math.max(tail.get() - h, 0L), capacity);
+        final List<E> snapshot = new ArrayList<>(n);
+        for(long i = h, end = h + n; i < end; ++i){
+            // Skip the slot that has been claimed but not stored yet
+            final E e = ring.get((int)i & mask);
+            if(e != null){
+                snapshot.add(e);
+            }
+        }
+        return Collections.unmodifiableList(snapshot).iterator();
+    }
+
+}
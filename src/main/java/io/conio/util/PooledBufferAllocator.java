@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2018, little-pan, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package io.conio.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * A pooled allocator of direct buffers, so that socket reads and writes don't copy through
+ * a temporary direct buffer of the JDK. Free buffers are pooled in power-of-2 size classes of
+ * their capacities, and a pooled buffer larger than the requested capacity is sliced to it, so
+ * the capacity is always the requested one. Each thread, e.g. an event loop, caches some free
+ * buffers of each size class, and the rest are shared by threads in a bounded pool. Buffers
+ * larger than maxPooledSize aren't pooled.
+ * </p>
+ */
+public class PooledBufferAllocator implements BufferAllocator {
+
+    private final int minSizeShift;
+    private final int maxPooledSize;
+    private final int threadCacheSize;
+    private final int sharedPoolSize;
+
+    private final ConcurrentLinkedQueue<ByteBuffer>[] sharedPools;
+    private final AtomicInteger[] sharedCounts;
+    private final ThreadLocal<ArrayDeque<ByteBuffer>[]> threadCaches;
+
+    private final LongAdder allocations = new LongAdder();
+    private final LongAdder reuses = new LongAdder();
+
+    public PooledBufferAllocator(){
+        this(512, 64 << 10, 64, 1024);
+    }
+
+    /**
+     * @param minSize the min size class, rounded up to a power of 2
+     * @param maxPooledSize the max size class, rounded up to a power of 2
+     * @param threadCacheSize max free buffers of each size class cached by a thread
+     * @param sharedPoolSize max free buffers of each size class shared by threads
+     */
+    public PooledBufferAllocator(int minSize, int maxPooledSize, int threadCacheSize, int sharedPoolSize){
+        if(minSize < 1 || minSize > (1 << 30)){
+            throw new IllegalArgumentException("minSize " + minSize);
+        }
+        if(maxPooledSize < minSize || maxPooledSize > (1 << 30)){
+            throw new IllegalArgumentException("maxPooledSize " + maxPooledSize);
+        }
+        if(threadCacheSize < 0 || sharedPoolSize < 0){
+            throw new IllegalArgumentException("threadCacheSize or sharedPoolSize negative");
+        }
+        this.minSizeShift = shift(minSize);
+        this.maxPooledSize = 1 << shift(maxPooledSize);
+        this.threadCacheSize = threadCacheSize;
+        this.sharedPoolSize = sharedPoolSize;
+
+        final int classes = shift(maxPooledSize) - minSizeShift + 1;
+        this.sharedPools = newSharedPools(classes);
+        this.sharedCounts = new AtomicInteger[classes];
+        for(int i = 0; i < classes; ++i){
+            sharedPools[i] = new ConcurrentLinkedQueue<>();
+            sharedCounts[i] = new AtomicInteger();
+        }
+        this.threadCaches = ThreadLocal.withInitial(() -> newThreadCaches(classes));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ConcurrentLinkedQueue<ByteBuffer>[] newSharedPools(int classes){
+        return (ConcurrentLinkedQueue<ByteBuffer>[])new ConcurrentLinkedQueue<?>[classes];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArrayDeque<ByteBuffer>[] newThreadCaches(int classes){
+        return (ArrayDeque<ByteBuffer>[])new ArrayDeque<?>[classes];
+    }
+
+    @Override
+    public ByteBuffer allocate(final int capacity){
+        if(capacity < 0){
+            throw new IllegalArgumentException("capacity " + capacity);
+        }
+        if(capacity > maxPooledSize){
+            allocations.increment();
+            return ByteBuffer.allocateDirect(capacity);
+        }
+        final int index = sizeClass(capacity);
+        final ArrayDeque<ByteBuffer> cache = threadCaches.get()[index];
+        ByteBuffer buffer = (cache == null? null: cache.pollFirst());
+        if(buffer == null && (buffer = sharedPools[index].poll()) != null){
+            sharedCounts[index].decrementAndGet();
+        }
+        if(buffer == null || buffer.capacity() < capacity){
+            // A smaller one of this class is dropped
+            allocations.increment();
+            return ByteBuffer.allocateDirect(capacity);
+        }
+        reuses.increment();
+        if(buffer.capacity() == capacity){
+            return buffer;
+        }
+        buffer.limit(capacity);
+        return buffer.slice();
+    }
+
+    @Override
+    public void release(final ByteBuffer buffer){
+        final int capacity = buffer.capacity();
+        if(!buffer.isDirect() || buffer.isReadOnly() || capacity > maxPooledSize || capacity == 0){
+            // Not pooled
+            return;
+        }
+        buffer.clear();
+        final int index = sizeClass(capacity);
+        final ArrayDeque<ByteBuffer>[] caches = threadCaches.get();
+        ArrayDeque<ByteBuffer> cache = caches[index];
+        if(cache == null && threadCacheSize > 0){
+            cache = caches[index] = new ArrayDeque<>();
+        }
+        if(cache != null && cache.size() < threadCacheSize){
+            // LIFO for the cache hot buffer
+            cache.offerFirst(buffer);
+            return;
+        }
+        final AtomicInteger count = sharedCounts[index];
+        if(count.incrementAndGet() <= sharedPoolSize){
+            sharedPools[index].offer(buffer);
+        }else{
+            count.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return the count of direct buffers allocated from the system
+     */
+    public long getAllocations(){
+        return allocations.sum();
+    }
+
+    /**
+     * @return the count of allocations served by pooled buffers
+     */
+    public long getReuses(){
+        return reuses.sum();
+    }
+
+    private int sizeClass(final int capacity){
+        final int shift = shift(capacity);
+        return (shift <= minSizeShift? 0: shift - minSizeShift);
+    }
+
+    private static int shift(final int size){
+        return (size <= 1? 0: 32 - Integer.numberOfLeadingZeros(size - 1));
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2018, little-pan, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package io.conio;
+
+import io.conio.util.IoUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Accept-rate benchmark: a client group storms the server with short connections,
+ * and the server closes each channel after accepting it. All connections must be accepted,
+ * at most acceptBatchSize ones per wakeup, and a storm fills the batch.
+ * </p>
+ */
+public class AcceptRateTest {
+    final static Logger log = LoggerFactory.getLogger(AcceptRateTest.class);
+
+    final static String HOST = "localhost";
+    final static int PORT = 9697;
+    final static int CONNS = 10000;
+
+    @Test
+    public void testAcceptOnePerWakeup(){
+        testAcceptRate(1, 30000L);
+    }
+
+    @Test
+    public void testAcceptBatch(){
+        testAcceptRate(64, 30000L);
+    }
+
+    private void testAcceptRate(int acceptBatchSize, long timeout){
+        final CoGroup serverGroup = CoGroup.newBuilder()
+                .setHost(HOST)
+                .setPort(PORT)
+                .setBacklog(CONNS)
+                .setAcceptBatchSize(acceptBatchSize)
+                .setName("serverCoGroup")
+                .channelInitializer((channel, sside) -> {
+                    if(sside) {
+                        final PushCoChannel chan = (PushCoChannel)channel;
+                        chan.handler((co) -> IoUtils.close(chan));
+                    }
+                })
+                .build();
+        serverGroup.start();
+
+        final CoGroup clientGroup = CoGroup.newBuilder()
+                .setName("clientCoGroup")
+                .build();
+        clientGroup.start();
+
+        final long ts = System.currentTimeMillis();
+        for(int i = 0; i < CONNS; ++i){
+            clientGroup.connect(HOST, PORT, (co) -> {
+                IoUtils.close((CoChannel)co.getContext());
+            });
+        }
+        for(;serverGroup.getAcceptCount() < CONNS;){
+            if(System.currentTimeMillis() - ts > timeout){
+                break;
+            }
+            BaseTest.sleep(10L);
+        }
+        final long millis = System.currentTimeMillis() - ts;
+        final long accepts = serverGroup.getAcceptCount();
+        final long nanos = serverGroup.getAcceptNanos();
+        log.info("acceptBatchSize: {}, accepts: {}, time: {}ms, accepts/s: {}, accept path: {}ns/conn",
+                acceptBatchSize, accepts, millis, (millis == 0L? accepts: accepts * 1000L / millis),
+                (accepts == 0L? 0L: nanos / accepts));
+        final int maxBatch = serverGroup.getMaxAcceptBatch();
+        log.info("acceptBatchSize: {}, max accept batch: {}", acceptBatchSize, maxBatch);
+        Assert.assertEquals(CONNS, accepts);
+        Assert.assertTrue(maxBatch <= acceptBatchSize);
+        // The backlog of the storm is accepted in batches
+        Assert.assertTrue(acceptBatchSize == 1? maxBatch == 1: maxBatch > 1);
+
+        clientGroup.shutdown();
+        clientGroup.await();
+        serverGroup.shutdown();
+        serverGroup.await();
+    }
+
+    public static void main(String args[]){
+        final AcceptRateTest test = new AcceptRateTest();
+        test.testAcceptOnePerWakeup();
+        test.testAcceptBatch();
+    }
+
+}
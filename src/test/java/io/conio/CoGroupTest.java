@@ -16,6 +16,7 @@
  */
 package io.conio;
 
+import io.conio.util.RtUtils;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,9 +40,35 @@ public class CoGroupTest {
         testConnect(false, 30000L);
     }
 
+    @Test
+    public void testNioMultiLoopConnect(){
+        testConnect(false, 15000L, RtUtils.PROCESSORS, false);
+    }
+
+    @Test
+    public void testNioReusePortConnect(){
+        testConnect(false, 15000L, RtUtils.PROCESSORS, true);
+    }
+
+    @Test
+    public void testAioMultiLoopConnect(){
+        testConnect(true, 15000L, RtUtils.PROCESSORS, false);
+    }
+
+    @Test
+    public void testAioReusePortConnect(){
+        testConnect(true, 15000L, RtUtils.PROCESSORS, true);
+    }
+
     private void testConnect(boolean useAio, long duration){
+        testConnect(useAio, duration, 1, false);
+    }
+
+    private void testConnect(boolean useAio, long duration, int ioThreads, boolean reusePort){
         final CoGroup serverGroup = CoGroup.newBuilder()
                 .useAio(useAio)
+                .setIoThreads(ioThreads)
+                .setReusePort(reusePort)
                 .setHost(HOST)
                 .setName("serverCoGroup")
                 .channelInitializer((channel, sside) -> {
@@ -55,12 +82,13 @@ public class CoGroupTest {
 
         final CoGroup clientGroup = CoGroup.newBuilder()
                 .useAio(useAio)
+                .setIoThreads(ioThreads)
                 .setName("clientCoGroup")
                 .build();
         clientGroup.start();
 
         final long ts = System.currentTimeMillis();
-        final int n = 10;
+        final int n = 10 * ioThreads;
         final EchoClientHandler handlers[] = new EchoClientHandler[n];
         for(int i = 0; i < n; ++i){
             final EchoClientHandler handler = new EchoClientHandler(1024);
@@ -91,6 +119,10 @@ public class CoGroupTest {
         test.testAioConnect();
         test.testNioConnect();
         test.testLongConnect();
+        test.testNioMultiLoopConnect();
+        test.testNioReusePortConnect();
+        test.testAioMultiLoopConnect();
+        test.testAioReusePortConnect();
     }
 
 }
@@ -40,6 +40,29 @@ public class CoProxyTest {
 
     @Test
     public void testProxy(){
+        testProxy(null);
+    }
+
+    @Test
+    public void testLeastOutstandingProxy(){
+        testProxy(PullChannelPool.BalancePolicy.LEAST_OUTSTANDING);
+    }
+
+    @Test
+    public void testEwmaLatencyProxy(){
+        testProxy(PullChannelPool.BalancePolicy.EWMA_LATENCY);
+    }
+
+    @Test
+    public void testLifoEvictionProxy(){
+        testProxy(null, true);
+    }
+
+    private void testProxy(final PullChannelPool.BalancePolicy policy){
+        testProxy(policy, false);
+    }
+
+    private void testProxy(final PullChannelPool.BalancePolicy policy, final boolean lifo){
         log.info("Start factorial backend servers");
         final CoGroup backendGroups[] = new CoGroup[BACKEND_HOSTS.length];
         final InetSocketAddress backends[] = new InetSocketAddress[BACKEND_HOSTS.length];
@@ -71,10 +94,13 @@ public class CoProxyTest {
                 .setName("proxyGroup")
                 .setPullChannelPoolHeartbeatInterval(1)
                 .setPullChannelPoolHeartbeatCodec(heartbeatCodec)
+                .setPullChannelPoolLifo(lifo)
+                .setPullChannelPoolMinIdle(lifo? 2: 0)
+                .setPullChannelPoolMaxIdleTime(lifo? 5000L: 0L)
                 .channelInitializer((channel, sside) -> {
                     if(sside) {
                         final PushCoChannel chan = (PushCoChannel)channel;
-                        chan.handler(new FactorialProxyHandler(backends));
+                        chan.handler(new FactorialProxyHandler(backends, policy));
                     }
                 })
                 .build();
@@ -105,7 +131,7 @@ public class CoProxyTest {
         if(sec == 0L){
             log.info("bytes: {}m, times: {}", bytes>>20, times);
         }else{
-            log.info("bytes: {}m, tps: {}", bytes>>20, times/sec);
+            log.info("policy: {}, lifo: {}, bytes: {}m, tps: {}", policy, lifo, bytes>>20, times/sec);
         }
 
         log.info("Test shutdown");
@@ -130,6 +156,9 @@ public class CoProxyTest {
     public static void main(String args[]){
         final CoProxyTest test = new CoProxyTest();
         test.testProxy();
+        test.testLeastOutstandingProxy();
+        test.testEwmaLatencyProxy();
+        test.testLifoEvictionProxy();
     }
 
 }
@@ -132,13 +132,12 @@ public class FactorialCodec {
             status = 0x01;
         }
 
-        // Send: LEN(4), status, result
+        // Send: LEN(4), status, result in one gathering write
         buffer.putInt(result.capacity() + 1);
         buffer.put(status);
         buffer.flip();
-        channel.write(co, buffer);
+        channel.write(co, new ByteBuffer[]{buffer, result});
         buffer.clear();
-        channel.write(co, result);
 
         return response.size = result.capacity() + 5;
     }
@@ -32,9 +32,18 @@ public class FactorialProxyHandler extends FactorialServerHandler {
     final static Logger log = LoggerFactory.getLogger(FactorialProxyHandler.class);
 
     final InetSocketAddress backends[];
+    // Choose a backend for each shard in this policy, or send shard i to backend i if null
+    final PullChannelPool.BalancePolicy policy;
+    final List<InetSocketAddress> backendList;
 
     public FactorialProxyHandler(InetSocketAddress backends[]){
+        this(backends, null);
+    }
+
+    public FactorialProxyHandler(InetSocketAddress backends[], PullChannelPool.BalancePolicy policy){
         this.backends = backends;
+        this.policy = policy;
+        this.backendList = Arrays.asList(backends);
     }
 
     @Override
@@ -45,8 +54,11 @@ public class FactorialProxyHandler extends FactorialServerHandler {
 
         final List<CoFuture<PullCoChannel>> cfutures = new ArrayList<>(backends.length);
         for(int i = 0; i < backends.length; ++i){
-            final InetSocketAddress backend = backends[i];
-            cfutures.add(chanPool.getChannel(co, backend));
+            if(policy == null){
+                cfutures.add(chanPool.getChannel(co, backends[i]));
+            }else{
+                cfutures.add(chanPool.getChannel(co, backendList, policy));
+            }
         }
         final PullCoChannel backendChans[] = new PullCoChannel[backends.length];
         try{
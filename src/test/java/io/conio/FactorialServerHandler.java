@@ -41,12 +41,12 @@ public class FactorialServerHandler implements CoHandler {
         try{
             final CoGroup group = channel.group();
             for(;!group.isShutdown();){
-                final ByteBuffer ib = channel.inBuffer();
-                ib.clear();
-                int n = channel.read(co, ib);
+                channel.inBuffer().clear();
+                int n = channel.readInBuffer(co);
                 if(n == -1){
                     break;
                 }
+                final ByteBuffer ib = channel.inBuffer();
                 ib.flip();
                 if(log.isDebugEnabled()){
                     log.debug("{}: Receive\n{}", channel.name(), IoUtils.dumphex(ib));
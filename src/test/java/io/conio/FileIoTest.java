@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2018, little-pan, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package io.conio;
+
+import com.offbynull.coroutines.user.Continuation;
+import io.conio.util.IoUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <p>
+ * File I/O in coroutines: write a file by writeFile(), read it back by readFile() and mapFile().
+ * </p>
+ */
+public class FileIoTest {
+    final static Logger log = LoggerFactory.getLogger(FileIoTest.class);
+    final static int FILE_SIZE = 8 << 20;
+
+    @Test
+    public void testNioFileIo() throws IOException {
+        testFileIo(false);
+    }
+
+    @Test
+    public void testAioFileIo() throws IOException {
+        testFileIo(true);
+    }
+
+    private void testFileIo(boolean useAio) throws IOException {
+        final File file = File.createTempFile("conio-file", ".bin");
+        file.deleteOnExit();
+
+        final CoGroup group = CoGroup.newBuilder()
+                .useAio(useAio)
+                .setName("fileCoGroup")
+                .build();
+        group.start();
+
+        final long ts = System.currentTimeMillis();
+        final FileIoHandler handler = new FileIoHandler(file);
+        group.startCoroutine(handler);
+        for(;!handler.done && System.currentTimeMillis() - ts < 30000L;){
+            BaseTest.sleep(10L);
+        }
+        final long millis = System.currentTimeMillis() - ts;
+        log.info("{}: written {}m, read {}m, mapped {}m in {}ms", (useAio? "aio": "nio"),
+                handler.written >> 20, handler.bytes >> 20, handler.mapped >> 20, millis);
+        Assert.assertEquals(FILE_SIZE, handler.written);
+        Assert.assertEquals(FILE_SIZE, handler.bytes);
+        Assert.assertEquals(FILE_SIZE, handler.mapped);
+
+        group.shutdown();
+        group.await();
+    }
+
+    static class FileIoHandler extends BaseTest implements CoHandler {
+        final File file;
+        volatile boolean done;
+        long written, mapped;
+
+        FileIoHandler(File file){
+            this.file = file;
+        }
+
+        @Override
+        public void handle(Continuation co) {
+            final CoRunner coRun = (CoRunner)co.getContext();
+            AsynchronousFileChannel fileChan = null;
+            RandomAccessFile raf = null;
+            try{
+                fileChan = AsynchronousFileChannel.open(file.toPath(),
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+                final ByteBuffer buffer = ByteBuffer.allocate(64 << 10);
+                for(;written < FILE_SIZE;){
+                    for(;buffer.hasRemaining();){
+                        buffer.put((byte)(written + buffer.position()));
+                    }
+                    buffer.flip();
+                    written += coRun.writeFile(co, fileChan, buffer, written);
+                    buffer.clear();
+                }
+
+                for(int n; (n = coRun.readFile(co, fileChan, buffer, bytes)) != -1;){
+                    buffer.flip();
+                    for(int i = 0; i < n; ++i, ++bytes){
+                        if(buffer.get() != (byte)bytes){
+                            throw new IOException("Data malformed at " + bytes);
+                        }
+                    }
+                    buffer.clear();
+                }
+
+                raf = new RandomAccessFile(file, "r");
+                final FileChannel chan = raf.getChannel();
+                final MappedByteBuffer mapping = coRun.mapFile(chan, 0L, chan.size());
+                for(;mapping.hasRemaining(); ++mapped){
+                    if(mapping.get() != (byte)mapped){
+                        throw new IOException("Mapped data malformed at " + mapped);
+                    }
+                }
+            }catch(final IOException e){
+                log.warn("IO error", e);
+            }finally {
+                IoUtils.close(raf);
+                IoUtils.close(fileChan);
+                done = true;
+            }
+        }
+    }
+
+    public static void main(String args[]) throws IOException {
+        final FileIoTest test = new FileIoTest();
+        test.testNioFileIo();
+        test.testAioFileIo();
+    }
+
+}
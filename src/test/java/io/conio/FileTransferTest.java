@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2018, little-pan, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package io.conio;
+
+import com.offbynull.coroutines.user.Continuation;
+import io.conio.util.IoUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * <p>
+ * Bulk download: the server sends a file by transferFrom(), and the client counts and checks the bytes.
+ * </p>
+ */
+public class FileTransferTest {
+    final static Logger log = LoggerFactory.getLogger(FileTransferTest.class);
+    final static String HOST = "localhost";
+    final static int FILE_SIZE = 32 << 20;
+
+    @Test
+    public void testNioTransfer() throws IOException {
+        testTransfer(false);
+    }
+
+    @Test
+    public void testAioTransfer() throws IOException {
+        testTransfer(true);
+    }
+
+    private void testTransfer(boolean useAio) throws IOException {
+        final File file = File.createTempFile("conio-transfer", ".bin");
+        file.deleteOnExit();
+        try(final RandomAccessFile raf = new RandomAccessFile(file, "rw")){
+            final byte[] block = new byte[8192];
+            for(int i = 0; i < block.length; ++i){
+                block[i] = (byte)i;
+            }
+            for(int i = 0; i < FILE_SIZE / block.length; ++i){
+                raf.write(block);
+            }
+        }
+
+        final CoGroup serverGroup = CoGroup.newBuilder()
+                .useAio(useAio)
+                .setHost(HOST)
+                .setName("serverCoGroup")
+                .channelInitializer((channel, sside) -> {
+                    if(sside) {
+                        final PushCoChannel chan = (PushCoChannel)channel;
+                        chan.handler(new TransferHandler(file));
+                    }
+                })
+                .build();
+        serverGroup.start();
+
+        final CoGroup clientGroup = CoGroup.newBuilder()
+                .useAio(useAio)
+                .setName("clientCoGroup")
+                .build();
+        clientGroup.start();
+
+        final long ts = System.currentTimeMillis();
+        final DownloadHandler handler = new DownloadHandler();
+        clientGroup.connect(HOST, serverGroup.getPort(), handler);
+        for(;!handler.done && System.currentTimeMillis() - ts < 30000L;){
+            BaseTest.sleep(10L);
+        }
+        final long millis = System.currentTimeMillis() - ts;
+        log.info("{}: transferred {}m in {}ms", (useAio? "aio": "nio"), handler.bytes >> 20, millis);
+        Assert.assertEquals(FILE_SIZE, handler.bytes);
+
+        clientGroup.shutdown();
+        clientGroup.await();
+        serverGroup.shutdown();
+        serverGroup.await();
+    }
+
+    static class TransferHandler implements CoHandler {
+        final File file;
+
+        TransferHandler(File file){
+            this.file = file;
+        }
+
+        @Override
+        public void handle(Continuation co) {
+            final PushCoChannel channel = (PushCoChannel)co.getContext();
+            RandomAccessFile raf = null;
+            try{
+                raf = new RandomAccessFile(file, "r");
+                final FileChannel fileChan = raf.getChannel();
+                final long n = channel.transferFrom(co, fileChan, 0L, fileChan.size());
+                log.debug("{}: transferred {} bytes", channel.name, n);
+            }catch(final IOException e){
+                log.warn("IO error", e);
+            }finally {
+                IoUtils.close(raf);
+                IoUtils.close(channel);
+            }
+        }
+    }
+
+    static class DownloadHandler extends BaseTest implements CoHandler {
+        volatile boolean done;
+
+        @Override
+        public void handle(Continuation co) {
+            final PushCoChannel channel = (PushCoChannel)co.getContext();
+            final ByteBuffer buffer = ByteBuffer.allocate(64 << 10);
+            try{
+                for(;channel.read(co, buffer) != -1;){
+                    buffer.flip();
+                    for(;buffer.hasRemaining(); ++bytes){
+                        if(buffer.get() != (byte)bytes){
+                            throw new IOException("Data malformed at " + bytes);
+                        }
+                    }
+                    buffer.clear();
+                }
+            }catch(final IOException e){
+                log.warn("IO error", e);
+            }finally {
+                IoUtils.close(channel);
+                done = true;
+            }
+        }
+    }
+
+    public static void main(String args[]) throws IOException {
+        final FileTransferTest test = new FileTransferTest();
+        test.testNioTransfer();
+        test.testAioTransfer();
+    }
+
+}
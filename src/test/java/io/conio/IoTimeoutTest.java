@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2018, little-pan, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package io.conio;
+
+import com.offbynull.coroutines.user.Continuation;
+import io.conio.util.IoUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class IoTimeoutTest {
+    final static Logger log = LoggerFactory.getLogger(IoTimeoutTest.class);
+    final static String HOST = "localhost";
+
+    @Test
+    public void testNioReadTimeout(){
+        testReadTimeout(false);
+    }
+
+    @Test
+    public void testAioReadTimeout(){
+        testReadTimeout(true);
+    }
+
+    @Test
+    public void testNioVectorReadTimeout(){
+        testReadTimeout(false, true);
+    }
+
+    @Test
+    public void testAioVectorReadTimeout(){
+        testReadTimeout(true, true);
+    }
+
+    private void testReadTimeout(boolean useAio){
+        testReadTimeout(useAio, false);
+    }
+
+    private void testReadTimeout(boolean useAio, boolean vectored){
+        final long timeout = 500L;
+        final AtomicInteger timeouts = new AtomicInteger();
+        final CoGroup serverGroup = CoGroup.newBuilder()
+                .useAio(useAio)
+                .setHost(HOST)
+                .setName("serverCoGroup")
+                .channelInitializer((channel, sside) -> {
+                    if(sside) {
+                        final PushCoChannel chan = (PushCoChannel)channel;
+                        chan.handler(new TimedReadHandler(timeout, timeouts, vectored));
+                    }
+                })
+                .build();
+        serverGroup.start();
+
+        final CoGroup clientGroup = CoGroup.newBuilder()
+                .useAio(useAio)
+                .setName("clientCoGroup")
+                .build();
+        clientGroup.start();
+
+        // Idle clients: the server should close them on read timeout
+        final int n = 10;
+        for(int i = 0; i < n; ++i){
+            clientGroup.connect(HOST, serverGroup.getPort(), new TimedReadHandler(0L, null));
+        }
+        BaseTest.sleep(timeout * 4L);
+        log.info("vectored: {}, read timeouts: {}", vectored, timeouts.get());
+        Assert.assertEquals(n, timeouts.get());
+
+        clientGroup.shutdown();
+        clientGroup.await();
+        serverGroup.shutdown();
+        serverGroup.await();
+    }
+
+    @Test
+    public void testNioVectorWriteTimeout(){
+        testWriteTimeout(false, false);
+    }
+
+    @Test
+    public void testAioVectorWriteTimeout(){
+        testWriteTimeout(true, false);
+    }
+
+    @Test
+    public void testNioTransferTimeout(){
+        testWriteTimeout(false, true);
+    }
+
+    @Test
+    public void testAioTransferTimeout(){
+        testWriteTimeout(true, true);
+    }
+
+    private void testWriteTimeout(boolean useAio, boolean transfer){
+        final long timeout = 500L;
+        final AtomicInteger timeouts = new AtomicInteger();
+        File file = null;
+        try{
+            // A sparse file larger than the socket buffers
+            file = File.createTempFile("conio-timeout-", ".dat");
+            try(final RandomAccessFile raf = new RandomAccessFile(file, "rw")){
+                raf.setLength(64L << 20);
+            }
+            final File src = file;
+            final CoGroup serverGroup = CoGroup.newBuilder()
+                    .useAio(useAio)
+                    .setHost(HOST)
+                    .setName("serverCoGroup")
+                    .channelInitializer((channel, sside) -> {
+                        if(sside) {
+                            final PushCoChannel chan = (PushCoChannel)channel;
+                            chan.handler(new TimedWriteHandler(timeout, timeouts, (transfer? src: null)));
+                        }
+                    })
+                    .build();
+            serverGroup.start();
+
+            // Clients that never read
+            final int n = 4;
+            final List<Socket> clients = new ArrayList<>(n);
+            try{
+                for(int i = 0; i < n; ++i){
+                    clients.add(new Socket(HOST, serverGroup.getPort()));
+                }
+                BaseTest.sleep(timeout * 6L);
+            }finally {
+                for(final Socket client: clients){
+                    IoUtils.close(client);
+                }
+            }
+            log.info("transfer: {}, write timeouts: {}", transfer, timeouts.get());
+            Assert.assertEquals(n, timeouts.get());
+
+            serverGroup.shutdown();
+            serverGroup.await();
+        }catch(final IOException e){
+            throw new RuntimeException(e);
+        }finally {
+            if(file != null){
+                file.delete();
+            }
+        }
+    }
+
+    @Test
+    public void testNioReaderIdle(){
+        testReaderIdle(false);
+    }
+
+    @Test
+    public void testAioReaderIdle(){
+        testReaderIdle(true);
+    }
+
+    private void testReaderIdle(boolean useAio){
+        final long idleTime = 500L;
+        final AtomicInteger idles = new AtomicInteger();
+        final CoGroup serverGroup = CoGroup.newBuilder()
+                .useAio(useAio)
+                .setHost(HOST)
+                .setName("serverCoGroup")
+                .setReaderIdleTime(idleTime)
+                .channelInitializer((channel, sside) -> {
+                    if(sside) {
+                        final PushCoChannel chan = (PushCoChannel)channel;
+                        chan.handler(new TimedReadHandler(0L, null){
+                            @Override
+                            public void idle(CoChannel channel, IdleState state){
+                                idles.incrementAndGet();
+                                super.idle(channel, state);
+                            }
+                        });
+                    }
+                })
+                .build();
+        serverGroup.start();
+
+        final CoGroup clientGroup = CoGroup.newBuilder()
+                .useAio(useAio)
+                .setName("clientCoGroup")
+                .build();
+        clientGroup.start();
+
+        final int n = 10;
+        for(int i = 0; i < n; ++i){
+            clientGroup.connect(HOST, serverGroup.getPort(), new TimedReadHandler(0L, null));
+        }
+        BaseTest.sleep(idleTime * 4L);
+        log.info("reader idles: {}", idles.get());
+        Assert.assertEquals(n, idles.get());
+
+        clientGroup.shutdown();
+        clientGroup.await();
+        serverGroup.shutdown();
+        serverGroup.await();
+    }
+
+    static class TimedReadHandler implements CoHandler {
+        final long timeout;
+        final AtomicInteger timeouts;
+        final boolean vectored;
+
+        TimedReadHandler(long timeout, AtomicInteger timeouts){
+            this(timeout, timeouts, false);
+        }
+
+        TimedReadHandler(long timeout, AtomicInteger timeouts, boolean vectored){
+            this.timeout  = timeout;
+            this.timeouts = timeouts;
+            this.vectored = vectored;
+        }
+
+        @Override
+        public void handle(Continuation co) {
+            final PushCoChannel channel = (PushCoChannel)co.getContext();
+            final ByteBuffer buffer = ByteBuffer.allocate(64);
+            final ByteBuffer[] buffers = {ByteBuffer.allocate(8), buffer};
+            try{
+                for(;;){
+                    if(vectored){
+                        if(channel.read(co, buffers, timeout) == -1L){
+                            break;
+                        }
+                        buffers[0].clear();
+                    }else if(channel.read(co, buffer, timeout) == -1){
+                        break;
+                    }
+                    buffer.clear();
+                }
+            }catch(final SocketTimeoutException e){
+                log.debug("{}: {}", channel.name, e.getMessage());
+                timeouts.incrementAndGet();
+            }catch(final IOException e){
+                log.debug("IO error", e);
+            }finally {
+                IoUtils.close(channel);
+            }
+        }
+    }
+
+    static class TimedWriteHandler implements CoHandler {
+        final long timeout;
+        final AtomicInteger timeouts;
+        // Transfer the file, or write buffers in gathering writes
+        final File file;
+
+        TimedWriteHandler(long timeout, AtomicInteger timeouts, File file){
+            this.timeout  = timeout;
+            this.timeouts = timeouts;
+            this.file = file;
+        }
+
+        @Override
+        public void handle(Continuation co) {
+            final PushCoChannel channel = (PushCoChannel)co.getContext();
+            try{
+                if(file != null){
+                    try(final FileChannel fileChan = new RandomAccessFile(file, "r").getChannel()){
+                        channel.transferFrom(co, fileChan, 0L, fileChan.size(), timeout);
+                    }
+                }else{
+                    final ByteBuffer[] buffers = {ByteBuffer.allocate(32 << 20), ByteBuffer.allocate(32 << 20)};
+                    channel.write(co, buffers, timeout);
+                }
+            }catch(final SocketTimeoutException e){
+                log.debug("{}: {}", channel.name, e.getMessage());
+                timeouts.incrementAndGet();
+            }catch(final IOException e){
+                log.debug("IO error", e);
+            }finally {
+                IoUtils.close(channel);
+            }
+        }
+    }
+
+    public static void main(String args[]){
+        final IoTimeoutTest test = new IoTimeoutTest();
+        test.testNioReadTimeout();
+        test.testAioReadTimeout();
+        test.testNioVectorReadTimeout();
+        test.testAioVectorReadTimeout();
+        test.testNioVectorWriteTimeout();
+        test.testAioVectorWriteTimeout();
+        test.testNioTransferTimeout();
+        test.testAioTransferTimeout();
+        test.testNioReaderIdle();
+        test.testAioReaderIdle();
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2018, little-pan, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package io.conio;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Small message latency benchmark of echo round trips.
+ * </p>
+ */
+public class LatencyTest {
+    final static Logger log = LoggerFactory.getLogger(LatencyTest.class);
+    final static String HOST = "localhost";
+
+    @Test
+    public void testNioLatency(){
+        testLatency(false, 64);
+    }
+
+    @Test
+    public void testNioStickyReadLatency(){
+        testLatency(false, 64, true);
+    }
+
+    @Test
+    public void testAioLatency(){
+        testLatency(true, 64);
+    }
+
+    private void testLatency(boolean useAio, int messageSize){
+        testLatency(useAio, messageSize, false);
+    }
+
+    private void testLatency(boolean useAio, int messageSize, boolean stickyRead){
+        final CoGroup serverGroup = CoGroup.newBuilder()
+                .useAio(useAio)
+                .setStickyRead(stickyRead)
+                .setHost(HOST)
+                .setName("serverCoGroup")
+                .channelInitializer((channel, sside) -> {
+                    if(sside) {
+                        final PushCoChannel chan = (PushCoChannel)channel;
+                        chan.handler(new EchoServerHandler(messageSize));
+                    }
+                })
+                .build();
+        serverGroup.start();
+
+        final CoGroup clientGroup = CoGroup.newBuilder()
+                .useAio(useAio)
+                .setStickyRead(stickyRead)
+                .setName("clientCoGroup")
+                .build();
+        clientGroup.start();
+
+        final int n = 10, samples = 20000;
+        final LatencyClientHandler handlers[] = new LatencyClientHandler[n];
+        for(int i = 0; i < n; ++i){
+            final LatencyClientHandler handler = new LatencyClientHandler(messageSize, samples);
+            clientGroup.connect(HOST, serverGroup.getPort(), handler);
+            handlers[i] = handler;
+        }
+        final long ts = System.currentTimeMillis();
+        for(;System.currentTimeMillis() - ts < 30000L;){
+            int done = 0;
+            for(final LatencyClientHandler handler: handlers){
+                if(handler.times >= samples){
+                    ++done;
+                }
+            }
+            if(done == n){
+                break;
+            }
+            BaseTest.sleep(100L);
+        }
+        clientGroup.shutdown();
+        clientGroup.await();
+
+        int count = 0;
+        for(final LatencyClientHandler handler: handlers){
+            count += handler.samples;
+        }
+        final long[] latencies = new long[count];
+        int i = 0;
+        for(final LatencyClientHandler handler: handlers){
+            System.arraycopy(handler.latencies, 0, latencies, i, handler.samples);
+            i += handler.samples;
+        }
+        Arrays.sort(latencies);
+        long sum = 0L;
+        for(final long latency: latencies){
+            sum += latency;
+        }
+        if(count > 0){
+            log.info("{}: stickyRead: {}, messageSize: {}, round trips: {}, avg: {}us, p50: {}us, p99: {}us",
+                    (useAio? "aio": "nio"), stickyRead, messageSize, count, sum / count / 1000L,
+                    latencies[count / 2] / 1000L, latencies[(int)(count * 0.99)] / 1000L);
+        }
+
+        serverGroup.shutdown();
+        serverGroup.await();
+    }
+
+    public static void main(String args[]){
+        final LatencyTest test = new LatencyTest();
+        test.testNioLatency();
+        test.testNioStickyReadLatency();
+        test.testAioLatency();
+    }
+
+}
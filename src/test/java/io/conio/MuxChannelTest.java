@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2018, little-pan, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package io.conio;
+
+import com.offbynull.coroutines.user.Continuation;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * <p>
+ * Many coroutines share one multiplexed channel to an echo server, and each one checks its responses.
+ * </p>
+ */
+public class MuxChannelTest {
+    final static Logger log = LoggerFactory.getLogger(MuxChannelTest.class);
+    final static String HOST = "localhost";
+
+    @Test
+    public void testNioMux(){
+        testMux(false);
+    }
+
+    @Test
+    public void testAioMux(){
+        testMux(true);
+    }
+
+    private void testMux(boolean useAio){
+        final CoGroup serverGroup = CoGroup.newBuilder()
+                .useAio(useAio)
+                .setHost(HOST)
+                .setName("serverCoGroup")
+                .channelInitializer((channel, sside) -> {
+                    if(sside) {
+                        final PushCoChannel chan = (PushCoChannel)channel;
+                        chan.handler(new EchoServerHandler());
+                    }
+                })
+                .build();
+        serverGroup.start();
+
+        final CoGroup clientGroup = CoGroup.newBuilder()
+                .useAio(useAio)
+                .setName("clientCoGroup")
+                .build();
+        clientGroup.start();
+
+        final long ts = System.currentTimeMillis();
+        final int requesters = 256, requests = 1000;
+        final InetSocketAddress server = new InetSocketAddress(HOST, serverGroup.getPort());
+        final MuxClientHandler handler = new MuxClientHandler(server, requesters, requests);
+        clientGroup.startCoroutine(handler);
+        for(;!handler.done && System.currentTimeMillis() - ts < 30000L;){
+            BaseTest.sleep(10L);
+        }
+        final long millis = System.currentTimeMillis() - ts;
+        log.info("{}: {} multiplexed responses in {}ms", (useAio? "aio": "nio"), handler.responses, millis);
+        Assert.assertEquals(requesters * requests, handler.responses);
+
+        clientGroup.shutdown();
+        clientGroup.await();
+        serverGroup.shutdown();
+        serverGroup.await();
+    }
+
+    static class MuxClientHandler implements CoHandler {
+        final InetSocketAddress server;
+        final int requesters, requests;
+        volatile boolean done;
+        int responses, finished;
+        MuxCoChannel muxChan;
+
+        MuxClientHandler(InetSocketAddress server, int requesters, int requests){
+            this.server = server;
+            this.requesters = requesters;
+            this.requests = requests;
+        }
+
+        @Override
+        public void handle(Continuation co) {
+            final CoRunner coRun = (CoRunner)co.getContext();
+            try{
+                muxChan = new MuxCoChannel(coRun.pullChannelPool().getChannel(co, server).get(co));
+            }catch(final ExecutionException e){
+                log.warn("Connection error", e);
+                done = true;
+                return;
+            }
+            for(int i = 0; i < requesters; ++i){
+                coRun.group().startCoroutine(new Requester(this, i));
+            }
+        }
+
+        final void finish(){
+            if(++finished == requesters){
+                muxChan.close();
+                done = true;
+            }
+        }
+    }
+
+    static class Requester implements CoHandler {
+        final MuxClientHandler client;
+        final int id;
+
+        Requester(MuxClientHandler client, int id){
+            this.client = client;
+            this.id = id;
+        }
+
+        @Override
+        public void handle(Continuation co) {
+            try{
+                for(int i = 0; i < client.requests; ++i){
+                    final ByteBuffer message = ByteBuffer.allocate(8);
+                    message.putInt(id).putInt(i).flip();
+                    final ByteBuffer response = client.muxChan.call(co, message);
+                    if(response.getInt(0) != id || response.getInt(4) != i){
+                        throw new IOException("Response malformed in requester " + id);
+                    }
+                    ++client.responses;
+                }
+            }catch(final IOException e){
+                log.warn("Mux error", e);
+            }finally {
+                client.finish();
+            }
+        }
+    }
+
+    public static void main(String args[]){
+        final MuxChannelTest test = new MuxChannelTest();
+        test.testNioMux();
+        test.testAioMux();
+    }
+
+}
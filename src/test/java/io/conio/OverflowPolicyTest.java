@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2018, little-pan, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package io.conio;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * <p>
+ * A full coQueue in BLOCK overflow policy: another event loop is rejected instead of waiting,
+ * and a waiting producer gives up when the target loop stops.
+ * </p>
+ */
+public class OverflowPolicyTest {
+
+    @Test
+    public void testLoopProducerRejected() throws InterruptedException {
+        final CoGroup.IoGroup ioGroup = newFullIoGroup();
+        try{
+            final boolean[] offered = {true, true};
+            final Thread producer = new CoGroup.LoopThread(() -> {
+                offered[0] = ioGroup.offer(() -> {});
+                offered[1] = ioGroup.put(() -> {});
+            }, "producer-loop");
+            producer.start();
+            producer.join(5000L);
+            Assert.assertFalse(producer.isAlive());
+            Assert.assertFalse(offered[0]);
+            Assert.assertFalse(offered[1]);
+            Assert.assertEquals(2L, ioGroup.rejectedTasks());
+        }finally {
+            ioGroup.close();
+        }
+    }
+
+    @Test
+    public void testLoopStopped() throws InterruptedException {
+        final CoGroup.IoGroup ioGroup = newFullIoGroup();
+        final boolean[] offered = {true};
+        final Thread producer = new Thread(() -> {
+            offered[0] = ioGroup.put(() -> {});
+        }, "producer");
+        producer.start();
+        producer.join(100L);
+        // Other threads wait for a free slot
+        Assert.assertTrue(producer.isAlive());
+
+        ioGroup.cleanup();
+        producer.join(5000L);
+        Assert.assertFalse(producer.isAlive());
+        Assert.assertFalse(offered[0]);
+        Assert.assertEquals(0L, ioGroup.rejectedTasks());
+    }
+
+    // An event loop not started, and its coQueue full
+    private CoGroup.IoGroup newFullIoGroup(){
+        final CoGroup group = CoGroup.newBuilder()
+                .setName("overflowCoGroup")
+                .setCoQueueCapacity(1)
+                .setOverflowPolicy(CoGroup.OverflowPolicy.BLOCK)
+                .build();
+        final CoGroup.IoGroup ioGroup = group.bootNio("overflowCoGroup-nio", 0);
+        Assert.assertTrue(ioGroup.offer(() -> {}));
+        Assert.assertTrue(ioGroup.coQueue.isFull());
+        return ioGroup;
+    }
+
+    public static void main(String args[]) throws InterruptedException {
+        final OverflowPolicyTest test = new OverflowPolicyTest();
+        test.testLoopProducerRejected();
+        test.testLoopStopped();
+    }
+
+}
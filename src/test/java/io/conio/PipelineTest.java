@@ -0,0 +1,423 @@
+/*
+ * Copyright (c) 2018, little-pan, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package io.conio;
+
+import com.offbynull.coroutines.user.Continuation;
+import io.conio.util.CoCallable;
+import io.conio.util.CoFuture;
+import io.conio.util.IoUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * <p>
+ * Request pipelining: many sequence requests in flight on one pooled echo channel,
+ * and the responses must complete in FIFO order. The large requests overflow the socket
+ * buffers unless the channel receives responses while sending. A failed encoder leaves
+ * the stream out of sync, so the requests in flight and later ones fail, and the channel closes.
+ * </p>
+ */
+public class PipelineTest {
+    final static Logger log = LoggerFactory.getLogger(PipelineTest.class);
+    final static String HOST = "localhost";
+
+    @Test
+    public void testNioPipeline(){
+        testPipeline(false, 100000, 8);
+    }
+
+    @Test
+    public void testAioPipeline(){
+        testPipeline(true, 100000, 8);
+    }
+
+    @Test
+    public void testNioLargePipeline(){
+        testPipeline(false, 10000, 8192);
+    }
+
+    @Test
+    public void testAioLargePipeline(){
+        testPipeline(true, 10000, 8192);
+    }
+
+    @Test
+    public void testNioPipelineClosed(){
+        testPipelineClosed(false);
+    }
+
+    @Test
+    public void testAioPipelineClosed(){
+        testPipelineClosed(true);
+    }
+
+    @Test
+    public void testNioEncoderFailed(){
+        testEncoderFailed(false);
+    }
+
+    @Test
+    public void testAioEncoderFailed(){
+        testEncoderFailed(true);
+    }
+
+    private void testPipeline(boolean useAio, int requests, int size){
+        final CoGroup serverGroup = CoGroup.newBuilder()
+                .useAio(useAio)
+                .setHost(HOST)
+                .setName("serverCoGroup")
+                .channelInitializer((channel, sside) -> {
+                    if(sside) {
+                        final PushCoChannel chan = (PushCoChannel)channel;
+                        chan.handler(new EchoServerHandler());
+                    }
+                })
+                .build();
+        serverGroup.start();
+
+        final CoGroup clientGroup = CoGroup.newBuilder()
+                .useAio(useAio)
+                .setName("clientCoGroup")
+                .build();
+        clientGroup.start();
+
+        final long ts = System.currentTimeMillis();
+        final InetSocketAddress server = new InetSocketAddress(HOST, serverGroup.getPort());
+        final PipelineHandler handler = new PipelineHandler(server, requests, size);
+        clientGroup.startCoroutine(handler);
+        for(;!handler.done && System.currentTimeMillis() - ts < 30000L;){
+            BaseTest.sleep(10L);
+        }
+        final long millis = System.currentTimeMillis() - ts;
+        log.info("{}: {} pipelined responses of {} bytes in {}ms",
+                (useAio? "aio": "nio"), handler.responses, size, millis);
+        Assert.assertEquals(requests, handler.responses);
+
+        clientGroup.shutdown();
+        clientGroup.await();
+        serverGroup.shutdown();
+        serverGroup.await();
+    }
+
+    private void testPipelineClosed(boolean useAio){
+        // The server never responds
+        final CoGroup serverGroup = CoGroup.newBuilder()
+                .useAio(useAio)
+                .setHost(HOST)
+                .setName("serverCoGroup")
+                .channelInitializer((channel, sside) -> {
+                    if(sside) {
+                        final PushCoChannel chan = (PushCoChannel)channel;
+                        chan.handler(new SilentServerHandler());
+                    }
+                })
+                .build();
+        serverGroup.start();
+
+        final CoGroup clientGroup = CoGroup.newBuilder()
+                .useAio(useAio)
+                .setName("clientCoGroup")
+                .build();
+        clientGroup.start();
+
+        final long ts = System.currentTimeMillis();
+        final int requests = 10;
+        final InetSocketAddress server = new InetSocketAddress(HOST, serverGroup.getPort());
+        final ClosedPipelineHandler handler = new ClosedPipelineHandler(server, requests);
+        clientGroup.startCoroutine(handler);
+        for(;!handler.done && System.currentTimeMillis() - ts < 30000L;){
+            BaseTest.sleep(10L);
+        }
+        Assert.assertTrue(handler.done);
+        // Both the requests in flight and the ones executed after closed
+        Assert.assertEquals(requests + 1, handler.failures);
+
+        clientGroup.shutdown();
+        clientGroup.await();
+        serverGroup.shutdown();
+        serverGroup.await();
+    }
+
+    private void testEncoderFailed(boolean useAio){
+        final CoGroup serverGroup = CoGroup.newBuilder()
+                .useAio(useAio)
+                .setHost(HOST)
+                .setName("serverCoGroup")
+                .channelInitializer((channel, sside) -> {
+                    if(sside) {
+                        final PushCoChannel chan = (PushCoChannel)channel;
+                        chan.handler(new EchoServerHandler());
+                    }
+                })
+                .build();
+        serverGroup.start();
+
+        final CoGroup clientGroup = CoGroup.newBuilder()
+                .useAio(useAio)
+                .setName("clientCoGroup")
+                .build();
+        clientGroup.start();
+
+        final long ts = System.currentTimeMillis();
+        final InetSocketAddress server = new InetSocketAddress(HOST, serverGroup.getPort());
+        final EncoderFailedHandler handler = new EncoderFailedHandler(server);
+        clientGroup.startCoroutine(handler);
+        for(;!handler.done && System.currentTimeMillis() - ts < 30000L;){
+            BaseTest.sleep(10L);
+        }
+        Assert.assertTrue(handler.done);
+        Assert.assertArrayEquals(new Class<?>[]{
+                PartialEncoderException.class, PartialEncoderException.class,
+                ClosedChannelException.class, ClosedChannelException.class}, handler.causes);
+        Assert.assertTrue(handler.closed);
+
+        clientGroup.shutdown();
+        clientGroup.await();
+        serverGroup.shutdown();
+        serverGroup.await();
+    }
+
+    static class PipelineHandler implements CoHandler {
+        final InetSocketAddress server;
+        final int requests, size;
+        volatile boolean done;
+        int responses;
+
+        PipelineHandler(InetSocketAddress server, int requests, int size){
+            this.server = server;
+            this.requests = requests;
+            this.size = size;
+        }
+
+        @Override
+        public void handle(Continuation co) {
+            final CoRunner coRun = (CoRunner)co.getContext();
+            PullCoChannel chan = null;
+            try{
+                chan = coRun.pullChannelPool().getChannel(co, server).get(co);
+                final List<CoFuture<Long>> futures = new ArrayList<>(requests);
+                for(long i = 0; i < requests; ++i){
+                    futures.add(chan.execute(new SequenceEncoder(i, size), new SequenceDecoder(size)));
+                }
+                for(int i = 0; i < requests; ++i){
+                    if(futures.get(i).get(co) != i){
+                        throw new IOException("Response out of order at " + i);
+                    }
+                    ++responses;
+                }
+            }catch(final ExecutionException | IOException e){
+                log.warn("Pipeline error", e);
+            }finally {
+                IoUtils.close(chan);
+                done = true;
+            }
+        }
+    }
+
+    static class ClosedPipelineHandler implements CoHandler {
+        final InetSocketAddress server;
+        final int requests;
+        volatile boolean done;
+        volatile int failures;
+
+        ClosedPipelineHandler(InetSocketAddress server, int requests){
+            this.server = server;
+            this.requests = requests;
+        }
+
+        @Override
+        public void handle(Continuation co) {
+            final CoRunner coRun = (CoRunner)co.getContext();
+            PullCoChannel chan = null;
+            try{
+                chan = coRun.pullChannelPool().getChannel(co, server).get(co);
+                final List<CoFuture<Long>> futures = new ArrayList<>(requests + 1);
+                for(long i = 0; i < requests; ++i){
+                    futures.add(chan.execute(new SequenceEncoder(i, 8), new SequenceDecoder(8)));
+                }
+                // Let the channel send the requests and wait for the responses
+                coRun.yield(co);
+                // Close the connection, not release it into the pool
+                ((PullChannelPool.SaPool.PooledChannel)chan).wrappedChan().close();
+                futures.add(chan.execute(new SequenceEncoder(requests, 8), new SequenceDecoder(8)));
+                for(final CoFuture<Long> f: futures){
+                    try{
+                        f.get(co);
+                    }catch(final ExecutionException e){
+                        ++failures;
+                    }
+                }
+            }catch(final ExecutionException e){
+                log.warn("Pipeline error", e);
+            }finally {
+                IoUtils.close(chan);
+                done = true;
+            }
+        }
+    }
+
+    static class EncoderFailedHandler implements CoHandler {
+        final InetSocketAddress server;
+        final Class<?>[] causes = new Class<?>[4];
+        volatile boolean done, closed;
+
+        EncoderFailedHandler(InetSocketAddress server){
+            this.server = server;
+        }
+
+        @Override
+        public void handle(Continuation co) {
+            final CoRunner coRun = (CoRunner)co.getContext();
+            PullCoChannel chan = null;
+            try{
+                chan = coRun.pullChannelPool().getChannel(co, server).get(co);
+                final List<CoFuture<Long>> futures = new ArrayList<>(causes.length);
+                // In flight when the next encoder fails: yield so that all requests are queued meanwhile
+                futures.add(chan.execute((c) -> {
+                    new SequenceEncoder(0L, 8).call(c);
+                    ((CoRunner)c.getContext()).yield(c);
+                    return null;
+                }, new SequenceDecoder(8)));
+                // Fails between two pipelined requests after writing half of its request
+                futures.add(chan.execute((c) -> {
+                    final CoChannel ch = (CoChannel)c.getContext();
+                    final ByteBuffer buffer = ByteBuffer.allocate(4);
+                    try{
+                        for(;buffer.hasRemaining();){
+                            ch.write(c, buffer);
+                        }
+                    }catch(final IOException e){
+                        throw new RuntimeException(e);
+                    }
+                    throw new PartialEncoderException();
+                }, new SequenceDecoder(8)));
+                for(long i = 2; i < causes.length; ++i){
+                    futures.add(chan.execute(new SequenceEncoder(i, 8), new SequenceDecoder(8)));
+                }
+                for(int i = 0; i < causes.length; ++i){
+                    try{
+                        futures.get(i).get(co);
+                    }catch(final ExecutionException e){
+                        causes[i] = e.getCause().getClass();
+                    }
+                }
+                closed = !((PullChannelPool.SaPool.PooledChannel)chan).wrappedChan().isOpen();
+            }catch(final ExecutionException e){
+                log.warn("Pipeline error", e);
+            }finally {
+                IoUtils.close(chan);
+                done = true;
+            }
+        }
+    }
+
+    static class PartialEncoderException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    static class SilentServerHandler implements CoHandler {
+
+        @Override
+        public void handle(Continuation co) {
+            final PushCoChannel channel = (PushCoChannel)co.getContext();
+            final ByteBuffer buffer = ByteBuffer.allocate(1024);
+            try{
+                for(;channel.read(co, buffer) != -1;){
+                    buffer.clear();
+                }
+            }catch(final IOException e){
+                log.debug("IO error", e);
+            }finally {
+                IoUtils.close(channel);
+            }
+        }
+    }
+
+    static class SequenceEncoder implements CoCallable<Void> {
+        final long sequence;
+        final int size;
+
+        SequenceEncoder(long sequence, int size){
+            this.sequence = sequence;
+            this.size = size;
+        }
+
+        @Override
+        public Void call(Continuation co) {
+            final CoChannel chan = (CoChannel)co.getContext();
+            final ByteBuffer buffer = ByteBuffer.allocate(size);
+            buffer.putLong(sequence).position(size);
+            buffer.flip();
+            try{
+                for(;buffer.hasRemaining();){
+                    chan.write(co, buffer);
+                }
+            }catch(final IOException e){
+                throw new RuntimeException(e);
+            }
+            return null;
+        }
+    }
+
+    static class SequenceDecoder implements CoCallable<Long> {
+        final int size;
+
+        SequenceDecoder(int size){
+            this.size = size;
+        }
+
+        @Override
+        public Long call(Continuation co) {
+            final CoChannel chan = (CoChannel)co.getContext();
+            final ByteBuffer buffer = ByteBuffer.allocate(size);
+            try{
+                for(;buffer.hasRemaining();){
+                    if(chan.read(co, buffer) == -1){
+                        throw new EOFException("Peer closed");
+                    }
+                }
+            }catch(final IOException e){
+                throw new RuntimeException(e);
+            }
+            return buffer.getLong(0);
+        }
+    }
+
+    public static void main(String args[]){
+        final PipelineTest test = new PipelineTest();
+        test.testNioPipeline();
+        test.testAioPipeline();
+        test.testNioLargePipeline();
+        test.testAioLargePipeline();
+        test.testNioPipelineClosed();
+        test.testAioPipelineClosed();
+        test.testNioEncoderFailed();
+        test.testAioEncoderFailed();
+    }
+
+}
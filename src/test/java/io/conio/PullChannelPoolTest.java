@@ -0,0 +1,404 @@
+/*
+ * Copyright (c) 2018, little-pan, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package io.conio;
+
+import com.offbynull.coroutines.user.Continuation;
+import io.conio.util.CoFuture;
+import io.conio.util.IoUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * <p>
+ * A pool at maxSize: the coroutine waiting for a free channel fails when maxWait expires,
+ * and the channel released after that goes back to the pool, not to the expired waiter.
+ * Closing the pool fails the waiting coroutine at once.
+ * The EWMA_LATENCY policy picks the slower backend less.
+ * </p>
+ */
+public class PullChannelPoolTest {
+    final static Logger log = LoggerFactory.getLogger(PullChannelPoolTest.class);
+    final static String HOST = "localhost";
+    final static long MAX_WAIT = 200L;
+
+    @Test
+    public void testNioMaxWait(){
+        testMaxWait(false);
+    }
+
+    @Test
+    public void testAioMaxWait(){
+        testMaxWait(true);
+    }
+
+    private void testMaxWait(boolean useAio){
+        final CoGroup serverGroup = CoGroup.newBuilder()
+                .useAio(useAio)
+                .setHost(HOST)
+                .setName("serverCoGroup")
+                .channelInitializer((channel, sside) -> {
+                    if(sside) {
+                        final PushCoChannel chan = (PushCoChannel)channel;
+                        chan.handler(new EchoServerHandler());
+                    }
+                })
+                .build();
+        serverGroup.start();
+
+        final CoGroup clientGroup = CoGroup.newBuilder()
+                .useAio(useAio)
+                .setName("clientCoGroup")
+                .setPullChannelPoolMaxSize(1)
+                .setPullChannelPoolMaxWait(MAX_WAIT)
+                .build();
+        clientGroup.start();
+
+        final long ts = System.currentTimeMillis();
+        final InetSocketAddress server = new InetSocketAddress(HOST, serverGroup.getPort());
+        final HolderHandler holder = new HolderHandler(server);
+        clientGroup.startCoroutine(holder);
+        for(;!holder.done && System.currentTimeMillis() - ts < 30000L;){
+            BaseTest.sleep(10L);
+        }
+        log.info("{}: waited {}ms, expired waits: {}", (useAio? "aio": "nio"),
+                holder.waiter.waitMillis, holder.expiredWaits);
+        Assert.assertTrue(holder.done);
+        Assert.assertTrue(holder.waiter.timedOut);
+        // Expired by the timing wheel in ticks
+        Assert.assertTrue(holder.waiter.waitMillis >= MAX_WAIT - 10L);
+        Assert.assertEquals(1L, holder.expiredWaits);
+        Assert.assertTrue(holder.reused);
+
+        clientGroup.shutdown();
+        clientGroup.await();
+        serverGroup.shutdown();
+        serverGroup.await();
+    }
+
+    @Test
+    public void testNioWaiterClosed(){
+        testWaiterClosed(false);
+    }
+
+    @Test
+    public void testAioWaiterClosed(){
+        testWaiterClosed(true);
+    }
+
+    private void testWaiterClosed(boolean useAio){
+        final CoGroup serverGroup = CoGroup.newBuilder()
+                .useAio(useAio)
+                .setHost(HOST)
+                .setName("serverCoGroup")
+                .channelInitializer((channel, sside) -> {
+                    if(sside) {
+                        final PushCoChannel chan = (PushCoChannel)channel;
+                        chan.handler(new EchoServerHandler());
+                    }
+                })
+                .build();
+        serverGroup.start();
+
+        final long maxWait = 10000L;
+        final CoGroup clientGroup = CoGroup.newBuilder()
+                .useAio(useAio)
+                .setName("clientCoGroup")
+                .setPullChannelPoolMaxSize(1)
+                .setPullChannelPoolMaxWait(maxWait)
+                .build();
+        clientGroup.start();
+
+        final long ts = System.currentTimeMillis();
+        final InetSocketAddress server = new InetSocketAddress(HOST, serverGroup.getPort());
+        final ClosingHandler holder = new ClosingHandler(server);
+        clientGroup.startCoroutine(holder);
+        for(;!holder.done && System.currentTimeMillis() - ts < 30000L;){
+            BaseTest.sleep(10L);
+        }
+        log.info("{}: waited {}ms until the pool closed", (useAio? "aio": "nio"), holder.waiter.waitMillis);
+        Assert.assertTrue(holder.done);
+        Assert.assertTrue(holder.waiter.closed);
+        Assert.assertTrue(holder.waiter.waitMillis < maxWait);
+
+        clientGroup.shutdown();
+        clientGroup.await();
+        serverGroup.shutdown();
+        serverGroup.await();
+    }
+
+    @Test
+    public void testNioEwmaLatency(){
+        testEwmaLatency(false);
+    }
+
+    @Test
+    public void testAioEwmaLatency(){
+        testEwmaLatency(true);
+    }
+
+    private void testEwmaLatency(boolean useAio){
+        final long[] delays = {0L, 20L};
+        final CoGroup[] serverGroups = new CoGroup[delays.length];
+        final InetSocketAddress[] servers = new InetSocketAddress[delays.length];
+        for(int i = 0; i < delays.length; ++i){
+            final long delay = delays[i];
+            serverGroups[i] = CoGroup.newBuilder()
+                    .useAio(useAio)
+                    .setHost(HOST)
+                    .setName("serverCoGroup"+i)
+                    .channelInitializer((channel, sside) -> {
+                        if(sside) {
+                            final PushCoChannel chan = (PushCoChannel)channel;
+                            chan.handler(new DelayedEchoHandler(delay));
+                        }
+                    })
+                    .build();
+            serverGroups[i].start();
+            servers[i] = new InetSocketAddress(HOST, serverGroups[i].getPort());
+        }
+
+        final CoGroup clientGroup = CoGroup.newBuilder()
+                .useAio(useAio)
+                .setName("clientCoGroup")
+                .build();
+        clientGroup.start();
+
+        final int rounds = 100;
+        final BalanceHandler balancer = new BalanceHandler(Arrays.asList(servers), rounds);
+        final long ts = System.currentTimeMillis();
+        clientGroup.startCoroutine(balancer);
+        for(;!balancer.done && System.currentTimeMillis() - ts < 30000L;){
+            BaseTest.sleep(10L);
+        }
+        log.info("{}: fast backend picks {}, slow backend picks {}", (useAio? "aio": "nio"),
+                balancer.picks[0], balancer.picks[1]);
+        Assert.assertTrue(balancer.done);
+        Assert.assertEquals(rounds, balancer.picks[0] + balancer.picks[1]);
+        // Once both sampled, the slow one loses every choice
+        Assert.assertTrue(balancer.picks[1] < rounds / 4);
+
+        clientGroup.shutdown();
+        clientGroup.await();
+        for(final CoGroup serverGroup: serverGroups){
+            serverGroup.shutdown();
+            serverGroup.await();
+        }
+    }
+
+    static class HolderHandler implements CoHandler {
+        final InetSocketAddress server;
+        final WaiterHandler waiter;
+        volatile boolean done, reused;
+        volatile long expiredWaits;
+
+        HolderHandler(InetSocketAddress server){
+            this.server = server;
+            this.waiter = new WaiterHandler(server);
+        }
+
+        @Override
+        public void handle(Continuation co) {
+            final CoRunner coRun = (CoRunner)co.getContext();
+            final PullChannelPool pool = coRun.pullChannelPool();
+            PullCoChannel chan = null;
+            try{
+                // Hold the only channel until the waiter expires
+                chan = pool.getChannel(co, server).get(co);
+                final long expired = pool.getExpiredWaits();
+                coRun.group().startCoroutine(waiter);
+                for(;!waiter.done;){
+                    coRun.yield(co);
+                }
+                expiredWaits = pool.getExpiredWaits() - expired;
+
+                // Release it, then it's free at once
+                final PullCoChannel held = chan;
+                chan = null;
+                held.close();
+                final CoFuture<PullCoChannel> f = pool.getChannel(co, server);
+                reused = f.isDone();
+                chan = f.get(co);
+                reused = reused && (chan == held);
+            }catch(final ExecutionException e){
+                log.warn("Get channel error", e);
+            }finally {
+                IoUtils.close(chan);
+                done = true;
+            }
+        }
+    }
+
+    static class ClosingHandler implements CoHandler {
+        final InetSocketAddress server;
+        final WaiterHandler waiter;
+        volatile boolean done;
+
+        ClosingHandler(InetSocketAddress server){
+            this.server = server;
+            this.waiter = new WaiterHandler(server);
+        }
+
+        @Override
+        public void handle(Continuation co) {
+            final CoRunner coRun = (CoRunner)co.getContext();
+            final PullChannelPool pool = coRun.pullChannelPool();
+            PullCoChannel chan = null;
+            try{
+                // Hold the only channel, then close the pool while the waiter waits for it
+                chan = pool.getChannel(co, server).get(co);
+                coRun.group().startCoroutine(waiter);
+                for(int i = 0; i < 10; ++i){
+                    coRun.yield(co);
+                }
+                pool.close();
+                for(;!waiter.done;){
+                    coRun.yield(co);
+                }
+            }catch(final ExecutionException e){
+                log.warn("Get channel error", e);
+            }finally {
+                IoUtils.close(chan);
+                done = true;
+            }
+        }
+    }
+
+    static class WaiterHandler implements CoHandler {
+        final InetSocketAddress server;
+        volatile boolean done, timedOut, closed;
+        volatile long waitMillis;
+
+        WaiterHandler(InetSocketAddress server){
+            this.server = server;
+        }
+
+        @Override
+        public void handle(Continuation co) {
+            final CoRunner coRun = (CoRunner)co.getContext();
+            final long ts = System.currentTimeMillis();
+            PullCoChannel chan = null;
+            try{
+                chan = coRun.pullChannelPool().getChannel(co, server).get(co);
+            }catch(final ExecutionException e){
+                timedOut = (e.getCause() instanceof TimeoutException);
+                closed = (e.getCause() instanceof ClosedChannelException);
+            }finally {
+                waitMillis = System.currentTimeMillis() - ts;
+                IoUtils.close(chan);
+                done = true;
+            }
+        }
+    }
+
+    static class DelayedEchoHandler implements CoHandler {
+        final long delay;
+
+        DelayedEchoHandler(long delay){
+            this.delay = delay;
+        }
+
+        @Override
+        public void handle(Continuation co) {
+            final PushCoChannel channel = (PushCoChannel)co.getContext();
+            final ByteBuffer buffer = ByteBuffer.allocate(64);
+            try{
+                for(;channel.read(co, buffer) != -1;){
+                    if(delay > 0L){
+                        // A slow backend: its own event loop is busy
+                        BaseTest.sleep(delay);
+                    }
+                    buffer.flip();
+                    for(;buffer.hasRemaining();){
+                        channel.write(co, buffer);
+                    }
+                    buffer.clear();
+                }
+            }catch(final IOException e){
+                log.debug("IO error", e);
+            }finally {
+                IoUtils.close(channel);
+            }
+        }
+    }
+
+    static class BalanceHandler implements CoHandler {
+        final List<InetSocketAddress> servers;
+        final int rounds;
+        final int[] picks;
+        volatile boolean done;
+
+        BalanceHandler(List<InetSocketAddress> servers, int rounds){
+            this.servers = servers;
+            this.rounds = rounds;
+            this.picks = new int[servers.size()];
+        }
+
+        @Override
+        public void handle(Continuation co) {
+            final CoRunner coRun = (CoRunner)co.getContext();
+            final PullChannelPool pool = coRun.pullChannelPool();
+            final ByteBuffer buffer = ByteBuffer.allocate(8);
+            try{
+                for(int i = 0; i < rounds; ++i){
+                    final PullCoChannel chan = pool.getChannel(co, servers, PullChannelPool.BalancePolicy.EWMA_LATENCY)
+                            .get(co);
+                    try{
+                        buffer.clear();
+                        buffer.putLong(i).flip();
+                        chan.write(co, buffer);
+                        buffer.clear();
+                        for(;buffer.hasRemaining();){
+                            if(chan.read(co, buffer) == -1){
+                                throw new IOException("Peer closed");
+                            }
+                        }
+                        final InetSocketAddress sa = ((PullChannelPool.SaPool.PooledChannel)chan).saPool.address;
+                        ++picks[servers.indexOf(sa)];
+                    }finally {
+                        IoUtils.close(chan);
+                    }
+                }
+            }catch(final ExecutionException | IOException e){
+                log.warn("Request error", e);
+            }finally {
+                done = true;
+            }
+        }
+    }
+
+    public static void main(String args[]){
+        final PullChannelPoolTest test = new PullChannelPoolTest();
+        test.testNioMaxWait();
+        test.testAioMaxWait();
+        test.testNioWaiterClosed();
+        test.testAioWaiterClosed();
+        test.testNioEwmaLatency();
+        test.testAioEwmaLatency();
+    }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2018, little-pan, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package io.conio;
+
+import com.offbynull.coroutines.user.Continuation;
+import io.conio.util.IoUtils;
+import io.conio.util.PooledBufferAllocator;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Echo through readInBuffer() with idle buffers released: the server reads many times into
+ * the inBuffer that is released and allocated again while waiting.
+ * </p>
+ */
+public class ReleaseBuffersTest {
+    final static Logger log = LoggerFactory.getLogger(ReleaseBuffersTest.class);
+    final static String HOST = "localhost";
+
+    @Test
+    public void testNioReleaseBuffers(){
+        testReleaseBuffers(false);
+    }
+
+    @Test
+    public void testAioReleaseBuffers(){
+        testReleaseBuffers(true);
+    }
+
+    private void testReleaseBuffers(boolean useAio){
+        final AtomicLong reads = new AtomicLong();
+        final CoGroup serverGroup = CoGroup.newBuilder()
+                .useAio(useAio)
+                .setHost(HOST)
+                .setName("serverCoGroup")
+                .setBufferAllocator(new PooledBufferAllocator())
+                .setReleaseIdleBuffers(true)
+                .channelInitializer((channel, sside) -> {
+                    if(sside) {
+                        final PushCoChannel chan = (PushCoChannel)channel;
+                        chan.handler(new ReleaseBuffersServerHandler(reads));
+                    }
+                })
+                .build();
+        serverGroup.start();
+
+        final CoGroup clientGroup = CoGroup.newBuilder()
+                .useAio(useAio)
+                .setName("clientCoGroup")
+                .build();
+        clientGroup.start();
+
+        final int n = 10, rounds = 100;
+        final EchoRoundsClientHandler handlers[] = new EchoRoundsClientHandler[n];
+        for(int i = 0; i < n; ++i){
+            final EchoRoundsClientHandler handler = new EchoRoundsClientHandler(rounds);
+            clientGroup.connect(HOST, serverGroup.getPort(), handler);
+            handlers[i] = handler;
+        }
+        final long ts = System.currentTimeMillis();
+        for(;System.currentTimeMillis() - ts < 30000L;){
+            int done = 0;
+            for(final EchoRoundsClientHandler handler: handlers){
+                if(handler.times >= rounds || handler.failed){
+                    ++done;
+                }
+            }
+            if(done == n){
+                break;
+            }
+            BaseTest.sleep(100L);
+        }
+        long times = 0L;
+        for(final EchoRoundsClientHandler handler: handlers){
+            times += handler.times;
+        }
+        log.info("{}: echo rounds: {}, server reads: {}", (useAio? "aio": "nio"), times, reads.get());
+        Assert.assertEquals(n * rounds, times);
+        Assert.assertTrue(reads.get() >= n * rounds);
+
+        clientGroup.shutdown();
+        clientGroup.await();
+        serverGroup.shutdown();
+        serverGroup.await();
+    }
+
+    static class ReleaseBuffersServerHandler implements CoHandler {
+        final AtomicLong reads;
+
+        ReleaseBuffersServerHandler(AtomicLong reads){
+            this.reads = reads;
+        }
+
+        @Override
+        public void handle(Continuation co) {
+            final PushCoChannel channel = (PushCoChannel)co.getContext();
+            try{
+                for(;;){
+                    channel.inBuffer().clear();
+                    final int n = channel.readInBuffer(co);
+                    if(n == -1){
+                        break;
+                    }
+                    if(n == 0){
+                        throw new IOException("Nothing read into the inBuffer");
+                    }
+                    reads.incrementAndGet();
+                    final ByteBuffer ib = channel.inBuffer();
+                    final ByteBuffer ob = channel.outBuffer();
+                    ib.flip();
+                    ob.put(ib).flip();
+                    for(;ob.hasRemaining();){
+                        channel.write(co, ob);
+                    }
+                    ob.clear();
+                }
+            }catch(final IOException e){
+                log.warn("IO error", e);
+            }finally {
+                IoUtils.close(channel);
+            }
+        }
+    }
+
+    static class EchoRoundsClientHandler extends BaseTest implements CoHandler {
+        final int rounds;
+        volatile boolean failed;
+
+        EchoRoundsClientHandler(int rounds){
+            this.rounds = rounds;
+        }
+
+        @Override
+        public void handle(Continuation co) {
+            final PushCoChannel channel = (PushCoChannel)co.getContext();
+            final ByteBuffer buffer = ByteBuffer.allocate(8);
+            try{
+                for(;times < rounds;){
+                    buffer.putLong(times).flip();
+                    for(;buffer.hasRemaining();){
+                        channel.write(co, buffer);
+                    }
+                    buffer.clear();
+                    for(;buffer.hasRemaining();){
+                        if(channel.read(co, buffer) == -1){
+                            throw new EOFException("Server closed");
+                        }
+                    }
+                    buffer.flip();
+                    if(buffer.getLong() != times){
+                        throw new IOException("Packet malformed");
+                    }
+                    buffer.clear();
+                    bytes += buffer.capacity();
+                    ++times;
+                }
+            }catch(final IOException e){
+                failed = true;
+                log.warn("IO error", e);
+            }finally {
+                IoUtils.close(channel);
+            }
+        }
+    }
+
+    public static void main(String args[]){
+        final ReleaseBuffersTest test = new ReleaseBuffersTest();
+        test.testNioReleaseBuffers();
+        test.testAioReleaseBuffers();
+    }
+
+}
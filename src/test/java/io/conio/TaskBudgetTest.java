@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2018, little-pan, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package io.conio;
+
+import com.offbynull.coroutines.user.Continuation;
+import io.conio.util.IoUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ * The task budget of the nio event loop: a flood of tasks or a coroutine that keeps yielding
+ * can't hold the loop, so a readable channel is still served.
+ * </p>
+ */
+public class TaskBudgetTest {
+    final static Logger log = LoggerFactory.getLogger(TaskBudgetTest.class);
+    final static String HOST = "localhost";
+
+    @Test
+    public void testMaxTasksPerLoop(){
+        final CoGroup.NioGroup ioGroup = newIoGroup(100, 16);
+        try{
+            final int[] ran = {0};
+            for(int i = 0; i < 100; ++i){
+                Assert.assertTrue(ioGroup.offer(() -> ++ran[0]));
+            }
+            ioGroup.handleCoTasks(0L);
+            Assert.assertEquals(16, ran[0]);
+            ioGroup.handleCoTasks(0L);
+            Assert.assertEquals(32, ran[0]);
+        }finally {
+            ioGroup.close();
+        }
+    }
+
+    @Test
+    public void testRequeuedTasks(){
+        // ioRatio 100 and no task limit: only the tasks queued before the drain stop it
+        final CoGroup.NioGroup ioGroup = newIoGroup(100, Integer.MAX_VALUE);
+        try{
+            final int[] ran = {0, 0};
+            final CoGroup.CoTask[] tasks = new CoGroup.CoTask[2];
+            // Offer itself again as a yielding coroutine does
+            tasks[0] = () -> {
+                ++ran[0];
+                ioGroup.localQueue.offer(tasks[0]);
+            };
+            tasks[1] = () -> {
+                ++ran[1];
+                ioGroup.coQueue.offer(tasks[1]);
+            };
+            ioGroup.localQueue.offer(tasks[0]);
+            ioGroup.coQueue.offer(tasks[1]);
+            ioGroup.handleCoTasks(0L);
+            Assert.assertEquals(1, ran[0]);
+            Assert.assertEquals(1, ran[1]);
+            ioGroup.handleCoTasks(0L);
+            Assert.assertEquals(2, ran[0]);
+            Assert.assertEquals(2, ran[1]);
+        }finally {
+            ioGroup.close();
+        }
+    }
+
+    @Test
+    public void testFloodedLoop(){
+        // Each task takes 0.1ms, and all take 2s
+        final int tasks = 20000;
+        final FloodHandler handler = new FloodHandler(tasks);
+        testServed(50, 64, handler);
+        log.info("Served after {} of {} tasks", handler.ranBeforeServed, tasks);
+        Assert.assertTrue(handler.ranBeforeServed < tasks);
+    }
+
+    @Test
+    public void testYieldingLoop(){
+        final YieldingHandler handler = new YieldingHandler();
+        testServed(100, Integer.MAX_VALUE, handler);
+        log.info("Served after {} yields", handler.spinner.yields);
+        Assert.assertTrue(handler.spinner.yields > 0L);
+    }
+
+    private void testServed(int ioRatio, int maxTasksPerLoop, final EchoOnceHandler handler){
+        final CoGroup serverGroup = CoGroup.newBuilder()
+                .setHost(HOST)
+                .setName("serverCoGroup")
+                .channelInitializer((channel, sside) -> {
+                    if(sside) {
+                        final PushCoChannel chan = (PushCoChannel)channel;
+                        chan.handler(new EchoServerHandler());
+                    }
+                })
+                .build();
+        serverGroup.start();
+
+        final CoGroup clientGroup = CoGroup.newBuilder()
+                .setName("clientCoGroup")
+                .setIoThreads(1)
+                .setIoRatio(ioRatio)
+                .setMaxTasksPerLoop(maxTasksPerLoop)
+                .build();
+        clientGroup.start();
+
+        final long ts = System.currentTimeMillis();
+        clientGroup.connect(HOST, serverGroup.getPort(), handler);
+        for(;!handler.done && System.currentTimeMillis() - ts < 30000L;){
+            BaseTest.sleep(10L);
+        }
+        Assert.assertTrue(handler.done);
+        Assert.assertTrue(handler.served);
+
+        clientGroup.shutdown();
+        clientGroup.await();
+        serverGroup.shutdown();
+        serverGroup.await();
+    }
+
+    // An event loop not started
+    private CoGroup.NioGroup newIoGroup(int ioRatio, int maxTasksPerLoop){
+        final CoGroup group = CoGroup.newBuilder()
+                .setName("budgetCoGroup")
+                .setIoRatio(ioRatio)
+                .setMaxTasksPerLoop(maxTasksPerLoop)
+                .build();
+        return (CoGroup.NioGroup)group.bootNio("budgetCoGroup-nio", 0);
+    }
+
+    static abstract class EchoOnceHandler implements CoHandler {
+        volatile boolean done, served;
+
+        @Override
+        public void handle(Continuation co) {
+            final CoChannel chan = (CoChannel)co.getContext();
+            try{
+                busy(co);
+                final ByteBuffer buffer = ByteBuffer.allocate(8);
+                buffer.putLong(System.nanoTime()).flip();
+                for(;buffer.hasRemaining();){
+                    chan.write(co, buffer);
+                }
+                buffer.clear();
+                for(;buffer.hasRemaining();){
+                    if(chan.read(co, buffer) == -1){
+                        throw new EOFException("Peer closed");
+                    }
+                }
+                served = true;
+                onServed();
+            }catch(final IOException e){
+                log.warn("IO error", e);
+            }finally {
+                IoUtils.close(chan);
+                done = true;
+            }
+        }
+
+        // Keep the event loop busy before the echo request
+        protected abstract void busy(Continuation co);
+
+        protected abstract void onServed();
+    }
+
+    static class FloodHandler extends EchoOnceHandler {
+        final int tasks;
+        volatile int ran, ranBeforeServed;
+
+        FloodHandler(int tasks){
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected void busy(Continuation co){
+            final CoGroup.IoGroup ioGroup = ((CoChannel)co.getContext()).group().currentIoGroup();
+            for(int i = 0; i < tasks; ++i){
+                ioGroup.offer(() -> {
+                    final long deadline = System.nanoTime() + 100000L;
+                    for(;System.nanoTime() < deadline;){
+                        // Busy
+                    }
+                    ++ran;
+                });
+            }
+        }
+
+        @Override
+        protected void onServed(){
+            ranBeforeServed = ran;
+        }
+    }
+
+    static class YieldingHandler extends EchoOnceHandler {
+        final SpinnerHandler spinner = new SpinnerHandler();
+
+        @Override
+        protected void busy(Continuation co){
+            final CoChannel chan = (CoChannel)co.getContext();
+            chan.group().startCoroutine(spinner);
+            // Let the spinner start
+            ((CoRunner)co.getContext()).yield(co);
+        }
+
+        @Override
+        protected void onServed(){
+            spinner.stopped = true;
+        }
+    }
+
+    static class SpinnerHandler implements CoHandler {
+        volatile boolean stopped;
+        volatile long yields;
+
+        @Override
+        public void handle(Continuation co) {
+            final CoRunner coRun = (CoRunner)co.getContext();
+            for(;!stopped;){
+                coRun.yield(co);
+                ++yields;
+            }
+        }
+    }
+
+    public static void main(String args[]){
+        final TaskBudgetTest test = new TaskBudgetTest();
+        test.testMaxTasksPerLoop();
+        test.testRequeuedTasks();
+        test.testFloodedLoop();
+        test.testYieldingLoop();
+    }
+
+}
@@ -80,6 +80,7 @@ public class TaskExecutionTest {
         }else{
             log.info("bytes: {}m, tps: {}", bytes>>20, times/sec);
         }
+        log.info("server wakeups avoided: {}", serverGroup.getWakeupsAvoided());
 
         serverGroup.shutdown();
         serverGroup.await();
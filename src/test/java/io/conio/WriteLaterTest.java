@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2018, little-pan, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package io.conio;
+
+import com.offbynull.coroutines.user.Continuation;
+import io.conio.util.IoUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ * Pipelined echo: the server queues responses by writeLater() and the event loop flushes them,
+ * and the client pipelines a batch of small requests before reading the responses.
+ * </p>
+ */
+public class WriteLaterTest {
+    final static Logger log = LoggerFactory.getLogger(WriteLaterTest.class);
+    final static String HOST = "localhost";
+
+    @Test
+    public void testNioWriteLater(){
+        testWriteLater(false);
+    }
+
+    @Test
+    public void testAioWriteLater(){
+        testWriteLater(true);
+    }
+
+    private void testWriteLater(boolean useAio){
+        final CoGroup serverGroup = CoGroup.newBuilder()
+                .useAio(useAio)
+                .setHost(HOST)
+                .setName("serverCoGroup")
+                .channelInitializer((channel, sside) -> {
+                    if(sside) {
+                        final PushCoChannel chan = (PushCoChannel)channel;
+                        chan.handler(new WriteLaterServerHandler());
+                    }
+                })
+                .build();
+        serverGroup.start();
+
+        final CoGroup clientGroup = CoGroup.newBuilder()
+                .useAio(useAio)
+                .setName("clientCoGroup")
+                .build();
+        clientGroup.start();
+
+        final int n = 10, rounds = 1000, pipeline = 16;
+        final PipelinedClientHandler handlers[] = new PipelinedClientHandler[n];
+        for(int i = 0; i < n; ++i){
+            final PipelinedClientHandler handler = new PipelinedClientHandler(rounds, pipeline);
+            clientGroup.connect(HOST, serverGroup.getPort(), handler);
+            handlers[i] = handler;
+        }
+        final long ts = System.currentTimeMillis();
+        for(;System.currentTimeMillis() - ts < 30000L;){
+            int done = 0;
+            for(final PipelinedClientHandler handler: handlers){
+                if(handler.times >= rounds){
+                    ++done;
+                }
+            }
+            if(done == n){
+                break;
+            }
+            BaseTest.sleep(100L);
+        }
+        final long millis = System.currentTimeMillis() - ts;
+        long times = 0L;
+        for(final PipelinedClientHandler handler: handlers){
+            times += handler.times;
+        }
+        log.info("{}: pipelined rounds: {}, time: {}ms", (useAio? "aio": "nio"), times, millis);
+        Assert.assertEquals(n * rounds, times);
+
+        clientGroup.shutdown();
+        clientGroup.await();
+        serverGroup.shutdown();
+        serverGroup.await();
+    }
+
+    static class WriteLaterServerHandler implements CoHandler {
+
+        @Override
+        public void handle(Continuation co) {
+            final PushCoChannel channel = (PushCoChannel)co.getContext();
+            final ByteBuffer buffer = ByteBuffer.allocate(1024);
+            try{
+                for(;channel.read(co, buffer) != -1;){
+                    buffer.flip();
+                    final ByteBuffer response = ByteBuffer.allocate(buffer.remaining());
+                    response.put(buffer).flip();
+                    channel.writeLater(response);
+                    buffer.clear();
+                }
+            }catch(final IOException e){
+                log.debug("IO error", e);
+            }finally {
+                IoUtils.close(channel);
+            }
+        }
+    }
+
+    static class PipelinedClientHandler extends BaseTest implements CoHandler {
+        final int rounds, pipeline;
+
+        PipelinedClientHandler(int rounds, int pipeline){
+            this.rounds = rounds;
+            this.pipeline = pipeline;
+        }
+
+        @Override
+        public void handle(Continuation co) {
+            final PushCoChannel channel = (PushCoChannel)co.getContext();
+            final ByteBuffer buffer = ByteBuffer.allocate(8 * pipeline);
+            try{
+                for(;times < rounds;){
+                    for(int i = 0; i < pipeline; ++i){
+                        final ByteBuffer request = ByteBuffer.allocate(8);
+                        request.putLong(times * pipeline + i).flip();
+                        channel.writeLater(request);
+                    }
+                    channel.flush(co);
+                    for(;buffer.hasRemaining();){
+                        if(channel.read(co, buffer) == -1){
+                            throw new EOFException("Server closed");
+                        }
+                    }
+                    buffer.flip();
+                    for(int i = 0; i < pipeline; ++i){
+                        if(buffer.getLong() != times * pipeline + i){
+                            throw new IOException("Packet malformed");
+                        }
+                    }
+                    buffer.clear();
+                    bytes += buffer.capacity();
+                    ++times;
+                }
+            }catch(final IOException e){
+                log.warn("IO error", e);
+            }finally {
+                IoUtils.close(channel);
+            }
+        }
+    }
+
+    public static void main(String args[]){
+        final WriteLaterTest test = new WriteLaterTest();
+        test.testNioWriteLater();
+        test.testAioWriteLater();
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2018, little-pan, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package io.conio.util;
+
+import io.conio.util.HashedTimingWheel.Timeout;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HashedTimingWheelTest {
+
+    @Test
+    public void testExpireOrder() throws InterruptedException {
+        final HashedTimingWheel wheel = new HashedTimingWheel(1L, 64);
+        final List<Integer> runs = new ArrayList<>();
+        final Timeout c = wheel.schedule(() -> runs.add(3), 30L);
+        final Timeout a = wheel.schedule(() -> runs.add(1), 10L);
+        final Timeout b = wheel.schedule(() -> runs.add(2), 20L);
+        assertEquals(3, wheel.size());
+        assertTrue(wheel.nextDelay() >= 0L);
+        assertEquals(0, wheel.expire());
+
+        sleep(40L);
+        assertEquals(3, wheel.expire());
+        assertEquals(Arrays.asList(1, 2, 3), runs);
+        assertEquals(0, wheel.size());
+        assertEquals(-1L, wheel.nextDelay());
+        for(final Timeout t: new Timeout[]{a, b, c}){
+            assertTrue(t.isExpired());
+            assertFalse(t.isPending());
+            assertFalse(t.cancel());
+        }
+
+        // Beyond one round of the wheel
+        final Timeout d = wheel.schedule(() -> runs.add(4), 100L);
+        sleep(10L);
+        assertEquals(0, wheel.expire());
+        assertTrue(d.isPending());
+        sleep(100L);
+        assertEquals(1, wheel.expire());
+        assertTrue(d.isExpired());
+        assertEquals(Arrays.asList(1, 2, 3, 4), runs);
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        final HashedTimingWheel wheel = new HashedTimingWheel(1L, 64);
+        final List<Integer> runs = new ArrayList<>();
+        final Timeout a = wheel.schedule(() -> runs.add(1), 10L);
+        final Timeout b = wheel.schedule(() -> runs.add(2), 10L);
+        assertTrue(a.cancel());
+        assertTrue(a.isCancelled());
+        assertFalse(a.isPending());
+        assertFalse(a.cancel());
+        assertEquals(1, wheel.size());
+
+        sleep(20L);
+        assertEquals(1, wheel.expire());
+        assertEquals(Arrays.asList(2), runs);
+        assertFalse(a.isExpired());
+        assertTrue(b.isExpired());
+    }
+
+    @Test
+    public void testCancelInExpiring() throws InterruptedException {
+        final HashedTimingWheel wheel = new HashedTimingWheel(1L, 64);
+        final List<Integer> runs = new ArrayList<>();
+        final Timeout[] later = new Timeout[1];
+        wheel.schedule(() -> {
+            runs.add(1);
+            // Due in this pass too
+            assertTrue(later[0].isPending());
+            assertTrue(later[0].cancel());
+        }, 10L);
+        later[0] = wheel.schedule(() -> runs.add(2), 20L);
+
+        sleep(30L);
+        assertEquals(1, wheel.expire());
+        assertEquals(Arrays.asList(1), runs);
+        assertTrue(later[0].isCancelled());
+        assertFalse(later[0].isExpired());
+        assertFalse(later[0].isPending());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testRescheduleInExpiring() throws InterruptedException {
+        final HashedTimingWheel wheel = new HashedTimingWheel(1L, 4);
+        final List<Integer> runs = new ArrayList<>();
+        final Timeout[] timeouts = new Timeout[3];
+        // The same tick
+        final long deadline = HashedTimingWheel.currentTime() + 10L;
+        timeouts[1] = wheel.scheduleAt(() -> runs.add(2), deadline);
+        timeouts[2] = wheel.scheduleAt(() -> runs.add(3), deadline);
+        // The bucket head, so that it runs first in the tick
+        timeouts[0] = wheel.scheduleAt(() -> {
+            runs.add(1);
+            if(runs.size() == 1){
+                // Self and a later due timeout
+                wheel.reschedule(timeouts[0], 40L);
+                wheel.reschedule(timeouts[1], 40L);
+            }
+        }, deadline);
+
+        sleep(20L);
+        assertEquals(2, wheel.expire());
+        assertEquals(Arrays.asList(1, 3), runs);
+        assertTrue(timeouts[0].isPending());
+        assertTrue(timeouts[1].isPending());
+        assertFalse(timeouts[1].isExpired());
+        assertTrue(timeouts[2].isExpired());
+        assertEquals(2, wheel.size());
+
+        sleep(50L);
+        assertEquals(2, wheel.expire());
+        assertEquals(4, runs.size());
+        assertTrue(runs.subList(2, 4).containsAll(Arrays.asList(1, 2)));
+        assertTrue(timeouts[0].isExpired());
+        assertTrue(timeouts[1].isExpired());
+        assertEquals(0, wheel.size());
+    }
+
+    static void sleep(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+
+}
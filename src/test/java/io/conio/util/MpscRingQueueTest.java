@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2018, little-pan, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package io.conio.util;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MpscRingQueueTest {
+    final static Logger log = LoggerFactory.getLogger(MpscRingQueueTest.class);
+
+    @Test
+    public void testBounded(){
+        final MpscRingQueue<Integer> queue = new MpscRingQueue<>(3);
+        assertTrue(queue.isEmpty());
+        assertTrue(queue.offer(1));
+        assertTrue(queue.offer(2));
+        assertTrue(queue.offer(3));
+        assertTrue(queue.isFull());
+        assertFalse(queue.offer(4));
+        assertEquals(3, queue.size());
+        assertEquals(Integer.valueOf(1), queue.poll());
+        assertTrue(queue.offer(4));
+        assertEquals(Integer.valueOf(2), queue.poll());
+        assertEquals(Integer.valueOf(3), queue.poll());
+        assertEquals(Integer.valueOf(4), queue.poll());
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testProducers() throws InterruptedException {
+        final MpscRingQueue<Long> queue = new MpscRingQueue<>(1024);
+        final int producers = 4, n = 1000000;
+        final Thread threads[] = new Thread[producers];
+        for(int i = 0; i < producers; ++i){
+            final long id = i;
+            threads[i] = new Thread(() -> {
+                for(long j = 0; j < n; ++j){
+                    // Producer id in the low bits, sequence in the high bits
+                    final Long e = (j << 8) | id;
+                    for(;!queue.offer(e);){
+                        Thread.yield();
+                    }
+                }
+            }, "producer-" + i);
+            threads[i].start();
+        }
+
+        final long ts = System.currentTimeMillis();
+        final long next[] = new long[producers];
+        for(long total = (long)producers * n; total > 0L; --total){
+            final Long e = queue.poll(10L, TimeUnit.SECONDS);
+            assertNotNull(e);
+            final int id = (int)(e & 0xff);
+            // FIFO per producer
+            assertEquals(next[id]++, e >> 8);
+        }
+        for(final Thread t: threads){
+            t.join();
+        }
+        assertTrue(queue.isEmpty());
+        log.info("{} producers, {} offers/producer: {}ms", producers, n, System.currentTimeMillis() - ts);
+    }
+
+    @Test
+    public void testIterator(){
+        final MpscRingQueue<Integer> queue = new MpscRingQueue<>(4);
+        assertEquals("[]", queue.toString());
+        assertFalse(queue.iterator().hasNext());
+        // Wrap around the ring
+        for(int i = 0; i < 3; ++i){
+            assertTrue(queue.offer(i));
+            assertEquals(Integer.valueOf(i), queue.poll());
+        }
+        assertTrue(queue.offer(3));
+        assertTrue(queue.offer(4));
+        assertTrue(queue.offer(5));
+
+        final Iterator<Integer> it = queue.iterator();
+        // A snapshot
+        assertTrue(queue.offer(6));
+        assertEquals(Integer.valueOf(3), it.next());
+        assertEquals(Integer.valueOf(4), it.next());
+        assertEquals(Integer.valueOf(5), it.next());
+        assertFalse(it.hasNext());
+        try{
+            it.remove();
+            fail("Snapshot iterator remove");
+        }catch(final UnsupportedOperationException e){
+            // Expected
+        }
+
+        assertEquals("[3, 4, 5, 6]", queue.toString());
+        assertTrue(queue.contains(6));
+        assertFalse(queue.contains(2));
+        queue.clear();
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.size());
+        assertTrue(queue.offer(7));
+        assertEquals(Integer.valueOf(7), queue.peek());
+    }
+
+}
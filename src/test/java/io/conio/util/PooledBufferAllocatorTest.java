@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2018, little-pan, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package io.conio.util;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class PooledBufferAllocatorTest {
+
+    @Test
+    public void testSizeClasses(){
+        final PooledBufferAllocator allocator = new PooledBufferAllocator(512, 4096, 2, 2);
+        final ByteBuffer a = allocator.allocate(100);
+        assertTrue(a.isDirect());
+        assertEquals(100, a.capacity());
+        assertEquals(513, allocator.allocate(513).capacity());
+        assertEquals(4096, allocator.allocate(4096).capacity());
+
+        // A larger pooled buffer of the size class is sliced to the capacity
+        final ByteBuffer c = allocator.allocate(1000);
+        allocator.release(c);
+        final ByteBuffer d = allocator.allocate(600);
+        assertEquals(1L, allocator.getReuses());
+        assertTrue(d.isDirect());
+        assertEquals(600, d.capacity());
+        assertEquals(0, d.position());
+        assertEquals(600, d.limit());
+        // The smaller one is dropped for a larger capacity
+        allocator.release(d);
+        assertEquals(1000, allocator.allocate(1000).capacity());
+        assertEquals(1L, allocator.getReuses());
+        // Not pooled
+        final ByteBuffer b = allocator.allocate(4097);
+        assertEquals(4097, b.capacity());
+        allocator.release(b);
+        assertNotSame(b, allocator.allocate(4097));
+    }
+
+    @Test
+    public void testReuse() throws InterruptedException {
+        final PooledBufferAllocator allocator = new PooledBufferAllocator(512, 4096, 1, 1);
+        final ByteBuffer a = allocator.allocate(1000);
+        final ByteBuffer b = allocator.allocate(1000);
+        a.putInt(1);
+        allocator.release(a);
+        // Thread cache full, then shared
+        allocator.release(b);
+        final ByteBuffer c = allocator.allocate(1000);
+        assertSame(a, c);
+        assertEquals(0, c.position());
+        assertEquals(c.capacity(), c.limit());
+
+        // The shared buffer is reused by other threads
+        final ByteBuffer[] result = new ByteBuffer[1];
+        final Thread t = new Thread(() -> result[0] = allocator.allocate(1000));
+        t.start();
+        t.join();
+        assertSame(b, result[0]);
+        assertEquals(2L, allocator.getReuses());
+        assertEquals(2L, allocator.getAllocations());
+        // Heap buffers aren't pooled
+        allocator.release(ByteBuffer.allocate(1024));
+        assertTrue(allocator.allocate(1024).isDirect());
+    }
+
+}